@@ -12,13 +12,21 @@
  ******************************************************************************/
 package org.eclipse.agail.device.base;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.eclipse.agail.Device;
 import org.eclipse.agail.Protocol;
+import org.eclipse.agail.api.object.GattQueueStatsObject;
+import org.eclipse.agail.exception.AgileNoResultException;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
 import org.eclipse.agail.object.DeviceStatusType;
+import org.eclipse.agail.object.StatusType;
 
 public abstract class AgileBLEDevice extends DeviceImp implements Device {
 
@@ -40,6 +48,23 @@ public abstract class AgileBLEDevice extends DeviceImp implements Device {
 	protected static final String GATT_SERVICE = "GATT_SERVICE";
 	protected static final String GATT_CHARACTERSTICS = "GATT_CHARACTERSTICS";
 
+	/**
+	 * Sensors of the device type, assigned by the device types declaring them
+	 * with {@link SensorDescriptor}s
+	 */
+	protected SensorTable sensorTable;
+
+	/**
+	 * Maximum time in milliseconds a device method waits for a queued GATT
+	 * operation, including the time spent in the queue
+	 */
+	protected static final long GATT_AWAIT_TIMEOUT = Long.getLong("agile.device.gatt.await",
+			3 * GattOperationQueue.DEFAULT_TIMEOUT);
+
+	/**
+	 * Orders and pipelines the GATT operations of the device
+	 */
+	protected final GattOperationQueue gattQueue = new GattOperationQueue(address, () -> deviceProtocol);
 
 	public AgileBLEDevice(DeviceOverview deviceOverview) throws DBusException {
 		super(deviceOverview);
@@ -67,12 +92,14 @@ public abstract class AgileBLEDevice extends DeviceImp implements Device {
 		try {
 			if (protocol.equals(BLUETOOTH_LOW_ENERGY) && deviceProtocol != null) {
 				deviceProtocol.Connect(address);
+				updateStatus(CONNECTED_STATUS);
 				logger.info("Device connect {}", deviceID);
 			} else {
 				logger.debug("Protocol not supported: {}", protocol);
 			}
 
 		} catch (DBusException e) {
+			invalidateStatus();
 			logger.error("Failed to connect device {}", deviceID);
 			throw new DBusException("Failed to connect device:" + deviceID);
 		}
@@ -82,11 +109,13 @@ public abstract class AgileBLEDevice extends DeviceImp implements Device {
 		try {
 			if (protocol.equals(BLUETOOTH_LOW_ENERGY) && deviceProtocol != null) {
 				deviceProtocol.Disconnect(address);
+				updateStatus(DISCONNECTED_STATUS);
 				logger.info("Device disconnected {}", deviceID);
 			} else {
 				logger.debug("Protocol not supported: {}", protocol);
 			}
 		} catch (DBusException e) {
+			invalidateStatus();
 			logger.error("Failed to disconnect device {}", deviceID);
 			throw new DBusException("Failed to disconnect device:" + deviceID);
 		}
@@ -102,12 +131,184 @@ public abstract class AgileBLEDevice extends DeviceImp implements Device {
 		return null;
 	}
 
+	/**
+	 * @param sensorName
+	 * @return the GATT profile of the value characteristic of the sensor
+	 */
+	protected Map<String, String> getReadValueProfile(String sensorName) {
+		return sensorTable.readValueProfile(sensorName);
+	}
+
+	/**
+	 * @param sensorName
+	 * @return the GATT profile of the configuration characteristic of the
+	 *         sensor
+	 */
+	protected Map<String, String> getConfigProfile(String sensorName) {
+		return sensorTable.configProfile(sensorName);
+	}
+
+	/**
+	 * @param sensorName
+	 * @return the GATT profile of the period characteristic of the sensor
+	 */
+	protected Map<String, String> getFrequencyProfile(String sensorName) {
+		return sensorTable.frequencyProfile(sensorName);
+	}
+
+	/**
+	 * Given the profile of a notification returns the names of the components
+	 * 
+	 * @param profile
+	 * @return
+	 */
+	protected List<String> getComponentNames(Map<String, String> profile) {
+		return sensorTable.componentNames(profile);
+	}
+
+	/**
+	 * Notifies each component carried by the characteristic
+	 */
 	@Override
-	protected boolean isConnected() {
-		if (Status().getStatus().equals(DeviceStatusType.CONNECTED.toString())) {
-			return true;
+	protected void processNotification(Map<String, String> profile, byte[] record, long receiveTime) {
+		if (sensorTable == null) {
+			super.processNotification(profile, record, receiveTime);
+			return;
 		}
-		return false;
+		for (String componentName : getComponentNames(profile)) {
+			notifyReading(componentName, record, receiveTime);
+		}
+	}
+
+	@Override
+	protected String getComponentName(Map<String, String> profile) {
+		if (sensorTable == null) {
+			return null;
+		}
+		List<String> componentNames = sensorTable.componentNames(profile);
+		return componentNames.isEmpty() ? null : componentNames.get(0);
+	}
+
+	/**
+	 * Components with the same value characteristic share the same
+	 * subscription
+	 */
+	@Override
+	protected String getSubscriptionKey(String componentName) {
+		String key = sensorTable == null ? null : sensorTable.subscriptionKey(componentName);
+		return key != null ? key : componentName;
+	}
+
+	@Override
+	protected boolean isSensorSupported(String sensorName) {
+		return sensorTable != null && sensorTable.contains(sensorName);
+	}
+
+	@Override
+	protected String getMeasurementUnit(String sensor) {
+		SensorDescriptor descriptor = sensorTable == null ? null : sensorTable.get(sensor);
+		return descriptor != null ? descriptor.unit : super.getMeasurementUnit(sensor);
+	}
+
+	@Override
+	protected int decodeReading(String componentName, byte[] readData, double[] values) {
+		return sensorTable == null ? -1 : sensorTable.decode(componentName, readData, values);
+	}
+
+	@Override
+	protected String formatValue(String componentName, double value) {
+		SensorDescriptor descriptor = sensorTable == null ? null : sensorTable.get(componentName);
+		return descriptor != null ? descriptor.format.format(value) : super.formatValue(componentName, value);
+	}
+
+	/**
+	 * Returns the state of the GATT operation queue of the device
+	 */
+	@Override
+	public GattQueueStatsObject GattQueueStats() {
+		return new GattQueueStatsObject(deviceID, gattQueue.getDepth(), gattQueue.getInFlight(),
+				gattQueue.getCompleted(), gattQueue.getFailed(), gattQueue.getCoalesced(),
+				gattQueue.getMeanQueueLatency(), gattQueue.getMaxQueueLatency(), gattQueue.getMeanServiceTime());
+	}
+
+	/**
+	 * Queues the read of a characteristic
+	 * 
+	 * @param profile
+	 * @return a future completed with the value read
+	 */
+	protected CompletableFuture<byte[]> gattRead(Map<String, String> profile) {
+		return gattQueue.submit(GattOperationQueue.Type.READ, profile, null).thenApply(value -> (byte[]) value);
+	}
+
+	/**
+	 * Queues the read of the next notification of a characteristic
+	 * 
+	 * @param profile
+	 * @return a future completed with the value notified
+	 */
+	protected CompletableFuture<byte[]> gattNotificationRead(Map<String, String> profile) {
+		return gattQueue.submit(GattOperationQueue.Type.NOTIFICATION_READ, profile, null)
+				.thenApply(value -> (byte[]) value);
+	}
+
+	/**
+	 * Queues the write of a characteristic
+	 * 
+	 * @param profile
+	 * @param payload
+	 * @return a future completed once the value is written
+	 */
+	protected CompletableFuture<Void> gattWrite(Map<String, String> profile, byte[] payload) {
+		return gattQueue.submit(GattOperationQueue.Type.WRITE, profile, payload).thenApply(reply -> null);
+	}
+
+	protected CompletableFuture<Void> gattSubscribe(Map<String, String> profile) {
+		return gattQueue.submit(GattOperationQueue.Type.SUBSCRIBE, profile, null).thenApply(reply -> null);
+	}
+
+	protected CompletableFuture<Void> gattUnsubscribe(Map<String, String> profile) {
+		return gattQueue.submit(GattOperationQueue.Type.UNSUBSCRIBE, profile, null).thenApply(reply -> null);
+	}
+
+	/**
+	 * Waits for a queued GATT operation. The operation fails on its own after
+	 * {@link GattOperationQueue#DEFAULT_TIMEOUT} once started, the wait is
+	 * also bounded by {@link #GATT_AWAIT_TIMEOUT} so that the caller does not
+	 * wait forever behind a long queue.
+	 * 
+	 * @param operation
+	 * @return the outcome of the operation
+	 * @throws DBusException
+	 */
+	protected static <T> T awaitGatt(CompletableFuture<T> operation) throws DBusException {
+		try {
+			return operation.get(GATT_AWAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DBusException("Interrupted waiting for a GATT operation");
+		} catch (TimeoutException e) {
+			throw new DBusException("Timed out waiting for a GATT operation");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new DBusException(String.valueOf(e.getCause().getMessage()));
+		}
+	}
+
+	@Override
+	protected void checkSubscribe() {
+		if (!BLUETOOTH_LOW_ENERGY.equals(protocol)) {
+			throw new AgileNoResultException("Protocol not supported: " + protocol);
+		}
+		super.checkSubscribe();
+	}
+
+	@Override
+	protected boolean isConnected() {
+		StatusType status = getCachedStatus();
+		return status != null && DeviceStatusType.CONNECTED.toString().equals(status.getStatus());
 	}
 
 }
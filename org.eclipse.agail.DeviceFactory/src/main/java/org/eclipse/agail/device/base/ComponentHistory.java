@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.agail.api.object.AggregateObject;
+import org.eclipse.agail.api.object.HistoryObject;
+
+/**
+ * Bounded history of the numeric values of a device component.
+ *
+ * Samples are kept in a ring of primitive arrays, the oldest sample being
+ * overwritten once the ring is full. The arrays grow on demand up to
+ * {@code agile.history.capacity} samples, as long as the memory reserved by
+ * all the histories of the DeviceFactory stays within
+ * {@code agile.history.budget} bytes; a history that cannot grow keeps
+ * recording in the space it already has.
+ *
+ * Each sample is also folded into rollup tiers of 1 minute and 1 hour
+ * buckets, which keep the aggregates of a longer period than the raw
+ * samples and answer aggregation queries without scanning them.
+ */
+public class ComponentHistory {
+
+	/**
+	 * Maximum number of samples kept for each component
+	 */
+	private static final int CAPACITY = Integer.getInteger("agile.history.capacity", 4096);
+
+	/**
+	 * Maximum number of bytes reserved by all the histories
+	 */
+	private static final long BUDGET = Long.getLong("agile.history.budget", 16L * 1024 * 1024);
+
+	/**
+	 * Bytes needed by a sample: a long timestamp and a double value
+	 */
+	private static final int SAMPLE_SIZE = 16;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final AtomicLong reserved = new AtomicLong();
+
+	private final int capacity;
+
+	/**
+	 * Rollup tiers, from the finest to the coarsest: 24 hours of 1 minute
+	 * buckets and 30 days of 1 hour buckets
+	 */
+	private final HistoryRollup[] rollups = { new HistoryRollup(60 * 1000L, 24 * 60),
+			new HistoryRollup(60 * 60 * 1000L, 30 * 24) };
+
+	private long[] timestamps = new long[0];
+
+	private double[] values = new double[0];
+
+	/**
+	 * Index of the next sample to write
+	 */
+	private int head;
+
+	private int size;
+
+	public ComponentHistory() {
+		this(CAPACITY);
+	}
+
+	public ComponentHistory(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Appends a sample. Timestamps older than the last sample are moved
+	 * forward to it, so that the history stays ordered.
+	 * 
+	 * @param timestamp
+	 * @param value
+	 */
+	public synchronized void add(long timestamp, double value) {
+		if (size == timestamps.length && !grow()) {
+			if (size == 0) {
+				return;
+			}
+			// full: overwrite the oldest sample
+			size--;
+		}
+		if (size > 0) {
+			timestamp = Math.max(timestamp, timestamps[index(size - 1)]);
+		}
+		timestamps[head] = timestamp;
+		values[head] = value;
+		head = (head + 1) % timestamps.length;
+		size++;
+		for (HistoryRollup rollup : rollups) {
+			rollup.add(timestamp, value);
+		}
+	}
+
+	/**
+	 * @param deviceID
+	 * @param componentID
+	 * @param unit
+	 * @param from
+	 * @param to
+	 * @return the samples between {@code from} and {@code to} (inclusive)
+	 */
+	public synchronized HistoryObject query(String deviceID, String componentID, String unit, long from, long to) {
+		int first = lowerBound(from);
+		int last = to == Long.MAX_VALUE ? size : lowerBound(to + 1);
+		int count = Math.max(0, last - first);
+		long[] rangeTimestamps = new long[count];
+		double[] rangeValues = new double[count];
+		for (int i = 0; i < count; i++) {
+			int j = index(first + i);
+			rangeTimestamps[i] = timestamps[j];
+			rangeValues[i] = values[j];
+		}
+		return new HistoryObject(deviceID, componentID, unit, rangeTimestamps, rangeValues);
+	}
+
+	/**
+	 * Aggregates the values between {@code from} and {@code to} in windows of
+	 * {@code window} milliseconds, aligned on the epoch. Windows without
+	 * values are omitted.
+	 * 
+	 * The coarsest rollup tier whose buckets fit in the window is used when it
+	 * covers the requested period, the raw samples otherwise.
+	 * 
+	 * @param deviceID
+	 * @param componentID
+	 * @param unit
+	 * @param from
+	 * @param to
+	 * @param window
+	 *            length of a window in milliseconds, greater than 0
+	 * @return the aggregates of the windows overlapping the period
+	 */
+	public synchronized AggregateObject aggregate(String deviceID, String componentID, String unit, long from,
+			long to, long window) {
+		long start = from - Math.floorMod(from, window);
+		long end = to - Math.floorMod(to, window);
+		end = end > Long.MAX_VALUE - window ? Long.MAX_VALUE : end + window;
+
+		HistoryRollup source = null;
+		long oldest = size == 0 ? Long.MAX_VALUE : timestamps[index(0)];
+		for (HistoryRollup rollup : rollups) {
+			if (window % rollup.resolution == 0 && (rollup.oldest() <= start || rollup.oldest() <= oldest)) {
+				source = rollup;
+				oldest = rollup.oldest();
+			}
+		}
+
+		HistoryAggregation aggregation = new HistoryAggregation(window);
+		if (source != null) {
+			source.aggregate(aggregation, start, end);
+		} else {
+			int last = end == Long.MAX_VALUE ? size : lowerBound(end);
+			for (int i = lowerBound(start); i < last; i++) {
+				int j = index(i);
+				aggregation.add(timestamps[j], values[j]);
+			}
+		}
+		return aggregation.toAggregateObject(deviceID, componentID, unit);
+	}
+
+	/**
+	 * @return the number of samples in the history
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Drops the samples and gives the reserved memory back to the budget
+	 */
+	public synchronized void release() {
+		free((long) timestamps.length * SAMPLE_SIZE);
+		timestamps = new long[0];
+		values = new double[0];
+		head = 0;
+		size = 0;
+		for (HistoryRollup rollup : rollups) {
+			rollup.release();
+		}
+	}
+
+	/**
+	 * @return the number of bytes reserved by all the histories
+	 */
+	public static long reservedBytes() {
+		return reserved.get();
+	}
+
+	/**
+	 * Reserves memory from the budget shared by all the histories
+	 * 
+	 * @param bytes
+	 * @return false if the budget is exhausted
+	 */
+	static boolean reserve(long bytes) {
+		if (reserved.addAndGet(bytes) > BUDGET) {
+			reserved.addAndGet(-bytes);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gives memory back to the budget shared by all the histories
+	 * 
+	 * @param bytes
+	 */
+	static void free(long bytes) {
+		reserved.addAndGet(-bytes);
+	}
+
+	/**
+	 * Doubles the arrays, unrolling the ring, if the capacity and the budget
+	 * allow it
+	 * 
+	 * @return true if the arrays have grown
+	 */
+	private boolean grow() {
+		int length = timestamps.length;
+		if (length >= capacity) {
+			return false;
+		}
+		int newLength = Math.min(capacity, Math.max(INITIAL_CAPACITY, length * 2));
+		if (!reserve((long) (newLength - length) * SAMPLE_SIZE)) {
+			return false;
+		}
+		long[] newTimestamps = new long[newLength];
+		double[] newValues = new double[newLength];
+		for (int i = 0; i < size; i++) {
+			newTimestamps[i] = timestamps[index(i)];
+			newValues[i] = values[index(i)];
+		}
+		timestamps = newTimestamps;
+		values = newValues;
+		head = size;
+		return true;
+	}
+
+	/**
+	 * @param i
+	 *            position of the sample, 0 being the oldest one
+	 * @return index of the sample in the arrays
+	 */
+	private int index(int i) {
+		int start = head - size;
+		if (start < 0) {
+			start += timestamps.length;
+		}
+		return (start + i) % timestamps.length;
+	}
+
+	/**
+	 * @param timestamp
+	 * @return position of the first sample not older than the timestamp
+	 */
+	private int lowerBound(long timestamp) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (timestamps[index(mid)] < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
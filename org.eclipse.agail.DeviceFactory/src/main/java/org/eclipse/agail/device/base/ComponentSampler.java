@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Periodically refreshes the last read of a component, so that interactive
+ * reads are served from the cache.
+ *
+ * The interval adapts to the signal: it is reset to {@code minInterval} when
+ * the last value changed by more than {@code threshold} since the previous
+ * sample, and doubled up to {@code maxInterval} while the value is flat.
+ *
+ * The first sample is taken at a random time within the interval and the
+ * following ones up to {@link #JITTER} of the interval early, so that the
+ * samples of many devices are spread instead of hitting the adapter at the
+ * same time.
+ */
+class ComponentSampler {
+
+	/**
+	 * Maximum fraction of the interval a sample is taken early
+	 */
+	static final double JITTER = 0.1;
+
+	private final DeviceImp device;
+
+	private final String componentName;
+
+	private final long minInterval;
+
+	private final long maxInterval;
+
+	private final double threshold;
+
+	/**
+	 * Current time between two samples
+	 */
+	private volatile long interval;
+
+	/**
+	 * Value of the component at the previous sample, only used by the timer
+	 */
+	private double previousValue = Double.NaN;
+
+	private volatile HashedWheelTimer.Timeout timeout;
+
+	private volatile boolean stopped;
+
+	ComponentSampler(DeviceImp device, String componentName, long interval) {
+		this(device, componentName, interval, interval, 0);
+	}
+
+	ComponentSampler(DeviceImp device, String componentName, long minInterval, long maxInterval,
+			double threshold) {
+		this.device = device;
+		this.componentName = componentName;
+		this.minInterval = minInterval;
+		this.maxInterval = maxInterval;
+		this.threshold = threshold;
+		this.interval = minInterval;
+	}
+
+	long getMinInterval() {
+		return minInterval;
+	}
+
+	long getMaxInterval() {
+		return maxInterval;
+	}
+
+	double getThreshold() {
+		return threshold;
+	}
+
+	long getInterval() {
+		return interval;
+	}
+
+	void start() {
+		timeout = DeviceExecutors.samplingTimer().schedule(this::fire,
+				ThreadLocalRandom.current().nextLong(interval));
+	}
+
+	void stop() {
+		stopped = true;
+		HashedWheelTimer.Timeout current = timeout;
+		if (current != null) {
+			current.cancel();
+		}
+	}
+
+	/**
+	 * Runs on the timer thread: hands the sample over to the read executor
+	 * and schedules the next one
+	 */
+	private void fire() {
+		if (stopped) {
+			return;
+		}
+		adapt(device.lastValue(componentName));
+		long sampleInterval = interval;
+		try {
+			DeviceExecutors.readExecutor().execute(() -> device.sample(componentName, sampleInterval));
+		} catch (RejectedExecutionException e) {
+			// the readers are busy, skip this sample
+		}
+		long early = (long) (ThreadLocalRandom.current().nextDouble() * JITTER * sampleInterval);
+		timeout = DeviceExecutors.samplingTimer().schedule(this::fire, sampleInterval - early);
+	}
+
+	/**
+	 * Shortens the interval if the value changed since the previous sample,
+	 * backs off otherwise
+	 * 
+	 * @param value
+	 *            the last value of the component, NaN if unknown
+	 */
+	private void adapt(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		if (!Double.isNaN(previousValue)) {
+			if (Math.abs(value - previousValue) > threshold) {
+				interval = minInterval;
+			} else {
+				interval = Math.min(maxInterval, 2 * interval);
+			}
+		}
+		previousValue = value;
+	}
+}
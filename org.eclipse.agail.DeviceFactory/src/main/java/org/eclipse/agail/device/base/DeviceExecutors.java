@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by all the devices hosted in the DeviceFactory JVM, so that
+ * the number of threads does not grow with the number of devices or with the
+ * request rate.
+ *
+ * The pool sizes can be tuned with the system properties
+ * {@code agile.device.read.threads} and {@code agile.device.read.queue}, the
+ * notification processing threads with {@code agile.device.notify.threads},
+ * the threads calling the protocols with {@code agile.device.protocol.threads},
+ * the resolution of the sampling timer with {@code agile.device.sample.tick}.
+ */
+public final class DeviceExecutors {
+
+	/**
+	 * Number of threads serving component reads
+	 */
+	private static final int READ_THREADS = Integer.getInteger("agile.device.read.threads", 4);
+
+	/**
+	 * Maximum number of component reads waiting for a free thread
+	 */
+	private static final int READ_QUEUE_SIZE = Integer.getInteger("agile.device.read.queue", 256);
+
+	private static final ThreadPoolExecutor readExecutor = new ThreadPoolExecutor(READ_THREADS, READ_THREADS, 60L,
+			TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(READ_QUEUE_SIZE), new NamedThreadFactory("device-read"));
+
+	/**
+	 * Number of threads processing the notifications of the devices
+	 */
+	private static final int NOTIFY_THREADS = Integer.getInteger("agile.device.notify.threads", 2);
+
+	/**
+	 * The queue is unbounded but holds at most one task per device, the
+	 * notifications themselves wait in the bounded queue of their device
+	 */
+	private static final ThreadPoolExecutor notificationExecutor = new ThreadPoolExecutor(NOTIFY_THREADS,
+			NOTIFY_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			new NamedThreadFactory("device-notify"));
+
+	/**
+	 * Number of threads waiting for the replies of protocol calls
+	 */
+	private static final int PROTOCOL_THREADS = Integer.getInteger("agile.device.protocol.threads", 8);
+
+	/**
+	 * The queue is unbounded but each device has a bounded number of protocol
+	 * calls in flight, see {@link GattOperationQueue}
+	 */
+	private static final ThreadPoolExecutor protocolExecutor = new ThreadPoolExecutor(PROTOCOL_THREADS,
+			PROTOCOL_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			new NamedThreadFactory("device-protocol"));
+
+	private static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+			new NamedThreadFactory("device-scheduler"));
+
+	/**
+	 * Resolution in milliseconds of the sampling timer
+	 */
+	private static final long SAMPLE_TICK = Long.getLong("agile.device.sample.tick", 100L);
+
+	private static final HashedWheelTimer samplingTimer = new HashedWheelTimer(scheduler, SAMPLE_TICK, 512);
+
+	static {
+		readExecutor.allowCoreThreadTimeOut(true);
+		notificationExecutor.allowCoreThreadTimeOut(true);
+		protocolExecutor.allowCoreThreadTimeOut(true);
+		scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	private DeviceExecutors() {
+	}
+
+	/**
+	 * Bounded executor used to read device components. Tasks submitted when
+	 * the queue is full are rejected with a
+	 * {@link java.util.concurrent.RejectedExecutionException}.
+	 *
+	 * @return the shared read executor
+	 */
+	public static ExecutorService readExecutor() {
+		return readExecutor;
+	}
+
+	/**
+	 * Executor draining the notification queues of the devices, see
+	 * {@link NotificationQueue}
+	 *
+	 * @return the shared notification executor
+	 */
+	public static ExecutorService notificationExecutor() {
+		return notificationExecutor;
+	}
+
+	/**
+	 * Executor making the synchronous protocol calls of the devices. The
+	 * callbacks of asynchronous DBus calls run on the worker threads of the
+	 * connection, which also run the methods exported by the devices, so a
+	 * device method waiting for such a callback could starve them.
+	 *
+	 * @return the shared protocol executor
+	 */
+	public static ExecutorService protocolExecutor() {
+		return protocolExecutor;
+	}
+
+	/**
+	 * Single threaded scheduler for delayed device actions. Scheduled tasks
+	 * must be short; protocol calls should be handed over to the
+	 * {@link #readExecutor()}.
+	 *
+	 * @return the shared scheduler
+	 */
+	public static ScheduledExecutorService scheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Timer of the periodic component samples, ticking on the
+	 * {@link #scheduler()}
+	 *
+	 * @return the shared sampling timer
+	 */
+	public static HashedWheelTimer samplingTimer() {
+		return samplingTimer;
+	}
+
+	/**
+	 * Creates daemon threads with a recognizable name
+	 */
+	static class NamedThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -15,9 +15,19 @@ package org.eclipse.agail.device.base;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import org.freedesktop.dbus.DBusSigHandler;
 import org.freedesktop.dbus.Variant;
 import org.freedesktop.dbus.exceptions.DBusException;
@@ -27,10 +37,21 @@ import org.eclipse.agail.exception.AgileNoResultException;
 import org.eclipse.agail.Device;
 import org.eclipse.agail.Protocol;
 import org.eclipse.agail.Protocol.NewRecordSignal;
+import org.eclipse.agail.api.DeviceExtension;
+import org.eclipse.agail.api.object.AggregateObject;
+import org.eclipse.agail.api.object.GattQueueStatsObject;
+import org.eclipse.agail.api.object.HistoryObject;
+import org.eclipse.agail.api.object.NotificationStatsObject;
+import org.eclipse.agail.api.object.PublishPolicyObject;
+import org.eclipse.agail.api.object.PublishStatsObject;
+import org.eclipse.agail.api.object.SamplingObject;
+import org.eclipse.agail.api.object.SamplingPolicyObject;
+import org.eclipse.agail.api.object.SubscriptionResultObject;
 import org.eclipse.agail.object.AbstractAgileObject;
 import org.eclipse.agail.object.DeviceComponent;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
+import org.eclipse.agail.object.DeviceStatusType;
 import org.eclipse.agail.object.RecordObject;
 import org.eclipse.agail.object.StatusType;
 
@@ -40,7 +61,7 @@ import org.eclipse.agail.object.StatusType;
  *         Agile Device implementation
  *
  */
-public abstract class DeviceImp extends AbstractAgileObject implements Device {
+public abstract class DeviceImp extends AbstractAgileObject implements Device, DeviceExtension {
 
 	protected final Logger logger = LoggerFactory.getLogger(DeviceImp.class);
 
@@ -99,25 +120,147 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	/**
 	 * Data
 	 */
-	protected RecordObject data;
+	protected volatile RecordObject data;
 
 	/**
 	 * Map to store the last reads of each components of the device
 	 */
-	protected Map<String, RecordObject> lastReadStore = new HashMap<String, RecordObject>();
+	protected Map<String, RecordObject> lastReadStore = new ConcurrentHashMap<String, RecordObject>();
+
+	/**
+	 * Recent numeric values of each component of the device
+	 */
+	protected Map<String, ComponentHistory> histories = new ConcurrentHashMap<String, ComponentHistory>();
+
+	/**
+	 * Cache policy of the components without a specific entry in
+	 * {@link #readCachePolicies}
+	 */
+	protected ReadCachePolicy defaultReadCachePolicy = new ReadCachePolicy(2000);
+
+	/**
+	 * Cache policy of each component of the device, declared by the device
+	 * type next to its profile
+	 */
+	protected Map<String, ReadCachePolicy> readCachePolicies = new HashMap<String, ReadCachePolicy>();
+
+	/**
+	 * Filters deciding which updates of each component are published
+	 */
+	protected Map<String, PublishFilter> publishFilters = new ConcurrentHashMap<String, PublishFilter>();
+
+	/**
+	 * High rate components whose updates are published in batches with a
+	 * NewSubscribeBatchSignal, declared by the device type next to its profile
+	 */
+	protected Set<String> batchedComponents = new HashSet<String>();
+
+	/**
+	 * Also publish a NewSubscribeValueSignal for each update of the batched
+	 * components, for the subscribers not handling batches
+	 */
+	protected boolean publishBatchedRecords = Boolean.getBoolean("agile.device.batch.records");
+
+	/**
+	 * Batches the updates of {@link #batchedComponents}, created on the first
+	 * batched update
+	 */
+	private volatile RecordBatcher<RecordObject> recordBatcher;
+
 	/**
 	 * Tracks the number of active subscriptions for each components of the
-	 * device
+	 * device, by {@link #getSubscriptionKey(String)}
 	 */
-	protected Map<String, Integer> subscribedComponents = new HashMap<String, Integer>();
+	protected final SubscriptionCounter subscribedComponents = new SubscriptionCounter();
 
-	private Map<String, CountDownLatch> ongoingReads = new HashMap<String, CountDownLatch>();
+	/**
+	 * Guards the installation and removal of the record signal handler
+	 */
+	private final Object signalHandlerLock = new Object();
+
+	/**
+	 * Reads in progress for each component of the device, shared by all the
+	 * concurrent readers of the component
+	 */
+	private final ConcurrentMap<String, CompletableFuture<RecordObject>> ongoingReads = new ConcurrentHashMap<String, CompletableFuture<RecordObject>>();
+
+	/**
+	 * Maximum time in milliseconds a reader waits for a component read
+	 */
+	protected long readTimeout = Long.getLong("agile.device.read.timeout", 10000L);
+
+	/**
+	 * Time in milliseconds the last known status of the device is used before
+	 * polling the protocol again
+	 */
+	protected long statusTtl = Long.getLong("agile.device.status.ttl", 5000L);
+
+	protected static final StatusType CONNECTED_STATUS = new StatusType(DeviceStatusType.CONNECTED.toString());
+
+	protected static final StatusType DISCONNECTED_STATUS = new StatusType(
+			DeviceStatusType.DISCONNECTED.toString());
+
+	private volatile CachedStatus cachedStatus;
+
+	/**
+	 * Sampling interval in milliseconds of the components of the device that
+	 * are read periodically, declared by the device type
+	 */
+	protected Map<String, Long> sampleIntervals = new HashMap<String, Long>();
+
+	/**
+	 * Sampling intervals overriding the ones of the device types, e.g.
+	 * {@code -Dagile.device.sample=Temperature:30000,Humidity:60000}
+	 */
+	private static final Map<String, Long> SAMPLE_INTERVALS = parseComponentValues(
+			System.getProperty("agile.device.sample", ""));
+
+	/**
+	 * Periodic samplers of the components of the device
+	 */
+	private final Map<String, ComponentSampler> samplers = new ConcurrentHashMap<String, ComponentSampler>();
+
+	/**
+	 * Maximum time in milliseconds a ReadAll call waits for the components of
+	 * the device to be read
+	 */
+	protected long readAllTimeout = Long.getLong("agile.device.readall.timeout", 15000L);
+
+	/**
+	 * Maximum time in milliseconds a SubscribeAll or UnsubscribeAll call waits
+	 * for the protocol operations of the components
+	 */
+	protected long subscribeAllTimeout = Long.getLong("agile.device.subscribeall.timeout", 15000L);
+
+	/**
+	 * Maximum number of values decoded from a raw value
+	 */
+	protected static final int MAX_DECODED_VALUES = 16;
+
+	/**
+	 * Per-thread buffer receiving the decoded values
+	 */
+	private static final ThreadLocal<double[]> decodeBuffer = ThreadLocal
+			.withInitial(() -> new double[MAX_DECODED_VALUES]);
+
+	/**
+	 * Drop the notifications whose value is zero, or not a number for the
+	 * device types without typed decoder
+	 */
+	protected boolean skipZeroReadings = false;
 
 	@SuppressWarnings("rawtypes")
 	protected DBusSigHandler newRecordSigHanlder;
 
 	protected boolean hasNewRecordSignalHandler = false;
 
+	/**
+	 * Notifications received by the record signal handler, processed out of
+	 * the D-Bus dispatch thread
+	 */
+	protected final NotificationQueue notifications = new NotificationQueue(this::processNotification,
+			DeviceExecutors.notificationExecutor());
+
 	public DeviceImp(DeviceOverview deviceOverview) throws DBusException {
 		this.deviceName = deviceOverview.name;
 		this.deviceID = deviceOverview.getProtocol().replace("org.eclipse.agail.protocol.", "").toLowerCase() + deviceOverview.id.replace(":", "");
@@ -175,7 +318,44 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	 * returns the status of the device
 	 */
 	public StatusType Status() {
-		return deviceProtocol.DeviceStatus(address);
+		StatusType status = deviceProtocol.DeviceStatus(address);
+		updateStatus(status);
+		return status;
+	}
+
+	/**
+	 * Returns the last known status of the device, polling {@link #Status()}
+	 * only when it is older than {@link #statusTtl}. Device operations use it
+	 * instead of a protocol round trip.
+	 * 
+	 * @return
+	 */
+	protected StatusType getCachedStatus() {
+		CachedStatus cached = cachedStatus;
+		if (cached != null && System.currentTimeMillis() < cached.expiry) {
+			return cached.status;
+		}
+		return Status();
+	}
+
+	/**
+	 * Records a status of the device learned from the protocol, e.g. from the
+	 * result of a connect or from a notification of the device
+	 * 
+	 * @param status
+	 */
+	protected void updateStatus(StatusType status) {
+		if (status != null) {
+			cachedStatus = new CachedStatus(status, System.currentTimeMillis() + statusTtl);
+		}
+	}
+
+	/**
+	 * Forgets the last known status, so that the next check polls the
+	 * protocol, e.g. after a failed protocol call
+	 */
+	protected void invalidateStatus() {
+		cachedStatus = null;
 	}
 
 	/**
@@ -212,6 +392,32 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 		return new ArrayList<RecordObject>(lastReadStore.values());
 	}
 
+	/**
+	 * Returns the values of the component kept between the given times
+	 */
+	public HistoryObject History(String componentID, long from, long to) {
+		ComponentHistory history = histories.get(componentID);
+		if (history == null) {
+			throw new AgileNoResultException("No history found for " + componentID);
+		}
+		return history.query(deviceID, componentID, getMeasurementUnit(componentID), from, to);
+	}
+
+	/**
+	 * Returns the aggregates of the values of the component in each window of
+	 * the given period
+	 */
+	public AggregateObject Aggregate(String componentID, long from, long to, long window) {
+		if (window <= 0) {
+			throw new AgileNoResultException("Invalid aggregation window " + window);
+		}
+		ComponentHistory history = histories.get(componentID);
+		if (history == null) {
+			throw new AgileNoResultException("No history found for " + componentID);
+		}
+		return history.aggregate(deviceID, componentID, getMeasurementUnit(componentID), from, to, window);
+	}
+
 	/**
 	 *
 	 *
@@ -259,24 +465,45 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	 */
 	@Override
 	public List<RecordObject> ReadAll() {
-		List<RecordObject> recObjs = new ArrayList<RecordObject>();
-		final CountDownLatch latch = new CountDownLatch(profile.size());
+		List<String> components = new ArrayList<String>();
+		List<CompletableFuture<RecordObject>> reads = new ArrayList<CompletableFuture<RecordObject>>();
+		List<String> misses = new ArrayList<String>();
 		for (DeviceComponent component : profile) {
-			if(isSensorSupported(component.id)){
-			new Thread(()->{
-				try {
-					recObjs.add(Read(component.id));
-				} catch (Exception e) {
-					e.printStackTrace();
+			if (isSensorSupported(component.id)) {
+				CompletableFuture<RecordObject> cached = readFromCache(component.id);
+				if (cached == null) {
+					misses.add(component.id);
 				}
-				latch.countDown();
-				}).start();				
+				components.add(component.id);
+				reads.add(cached);
+			}
+		}
+		// the components missing from the cache are read together
+		Map<String, CompletableFuture<RecordObject>> deviceReads = startReads(misses);
+		for (int i = 0; i < reads.size(); i++) {
+			if (reads.get(i) == null) {
+				reads.set(i, deviceReads.get(components.get(i)));
 			}
 		}
 		try {
-			latch.await();
+			CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[reads.size()])).get(readAllTimeout,
+					TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			logger.warn("ReadAll of {} timed out after {} ms", deviceID, readAllTimeout);
+		} catch (ExecutionException e) {
+			// failed components are skipped below
 		} catch (InterruptedException e) {
- 			e.printStackTrace();
+			Thread.currentThread().interrupt();
+		}
+		// collect the completed reads in profile order
+		List<RecordObject> recObjs = new ArrayList<RecordObject>(reads.size());
+		for (int i = 0; i < reads.size(); i++) {
+			CompletableFuture<RecordObject> read = reads.get(i);
+			if (read.isDone() && !read.isCompletedExceptionally()) {
+				recObjs.add(read.join());
+			} else if (read.isDone()) {
+				logger.warn("Failed to read {}", components.get(i));
+			}
 		}
 		return recObjs;
 	}
@@ -289,68 +516,467 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	 */
 	@Override
 	public RecordObject Read(String componentName) {
+		return awaitRead(componentName, ReadAsync(componentName));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #Read(String)}: the returned future
+	 * completes with the record of the component once it is read, or
+	 * immediately when the last read can be served from the cache.
+	 * 
+	 * Concurrent calls for the same component share the same future, so that
+	 * a single protocol read is made.
+	 * 
+	 * @param componentName
+	 * @return
+	 */
+	public CompletableFuture<RecordObject> ReadAsync(String componentName) {
+		CompletableFuture<RecordObject> cached = readFromCache(componentName);
+		return cached != null ? cached : startRead(componentName);
+	}
+
+	/**
+	 * Serves the read of the component from the cache when its cache policy
+	 * allows it, refreshing a stale record in the background
+	 * 
+	 * @param componentName
+	 * @return the cached record, null if the component has to be read
+	 */
+	protected CompletableFuture<RecordObject> readFromCache(String componentName) {
 		RecordObject lastRead = lastReadStore.get(componentName);
-    if (isRecentRead(lastRead)) {
+		ReadCachePolicy cachePolicy = getReadCachePolicy(componentName);
+		long now = System.currentTimeMillis();
+		if (cachePolicy.isFresh(lastRead, now)) {
 			logger.info("Cached read....{}", lastRead);
-			return lastRead;
-		} else {
-			if (isReadOngoing(componentName)) {
+			return CompletableFuture.completedFuture(lastRead);
+		}
+		if (cachePolicy.isServableStale(lastRead, now)) {
+			logger.info("Stale read....{}", lastRead);
+			startRead(componentName);
+			return CompletableFuture.completedFuture(lastRead);
+		}
+		return null;
+	}
+
+	/**
+	 * Starts a read of the component unless one is already in progress
+	 * 
+	 * @param componentName
+	 * @return the future of the read in progress
+	 */
+	private CompletableFuture<RecordObject> startRead(String componentName) {
+		CompletableFuture<RecordObject> read = new CompletableFuture<RecordObject>();
+		CompletableFuture<RecordObject> ongoing = ongoingReads.putIfAbsent(componentName, read);
+		if (ongoing != null) {
+			logger.info("Joining ongoing read of {}", componentName);
+			return ongoing;
+		}
+		try {
+			DeviceReadAsync(componentName).whenComplete((value, error) -> completeRead(componentName, read, value, error));
+		} catch (RuntimeException e) {
+			completeRead(componentName, read, null, e);
+		}
+		return read;
+	}
+
+	/**
+	 * Starts a read of the given components, joining the reads already in
+	 * progress. The other components are read with a single
+	 * {@link #DeviceReadAllAsync(List)} when the device type supports it.
+	 * 
+	 * @param componentNames
+	 * @return the future of the read of each component
+	 */
+	private Map<String, CompletableFuture<RecordObject>> startReads(List<String> componentNames) {
+		Map<String, CompletableFuture<RecordObject>> reads = new HashMap<String, CompletableFuture<RecordObject>>();
+		if (componentNames.size() < 2) {
+			for (String componentName : componentNames) {
+				reads.put(componentName, startRead(componentName));
+			}
+			return reads;
+		}
+		Map<String, CompletableFuture<RecordObject>> started = new HashMap<String, CompletableFuture<RecordObject>>();
+		for (String componentName : componentNames) {
+			CompletableFuture<RecordObject> read = new CompletableFuture<RecordObject>();
+			CompletableFuture<RecordObject> ongoing = ongoingReads.putIfAbsent(componentName, read);
+			if (ongoing != null) {
+				logger.info("Joining ongoing read of {}", componentName);
+				reads.put(componentName, ongoing);
+			} else {
+				reads.put(componentName, read);
+				started.put(componentName, read);
+			}
+		}
+		if (started.isEmpty()) {
+			return reads;
+		}
+		CompletableFuture<Map<String, String>> batch;
+		try {
+			batch = DeviceReadAllAsync(new ArrayList<String>(started.keySet()));
+		} catch (RuntimeException e) {
+			for (Map.Entry<String, CompletableFuture<RecordObject>> read : started.entrySet()) {
+				completeRead(read.getKey(), read.getValue(), null, e);
+			}
+			return reads;
+		}
+		if (batch == null) {
+			// no batch read for the device type
+			for (Map.Entry<String, CompletableFuture<RecordObject>> read : started.entrySet()) {
 				try {
-					ongoingReads.get(componentName).await();
-					logger.info("Read from ongoing read {}", lastReadStore.get(componentName));
-					return lastReadStore.get(componentName);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+					DeviceReadAsync(read.getKey()).whenComplete(
+							(value, error) -> completeRead(read.getKey(), read.getValue(), value, error));
+				} catch (RuntimeException e) {
+					completeRead(read.getKey(), read.getValue(), null, e);
 				}
-			} else {
-				synchronized (componentName) {
-					ongoingReads.put(componentName, new CountDownLatch(1));
-					try {
-						data = new RecordObject(deviceID, componentName, DeviceRead(componentName),
-								getMeasurementUnit(componentName), "", System.currentTimeMillis());
-						lastReadStore.put(componentName, data);
-						ongoingReads.get(componentName).countDown();
-						synchronized (ongoingReads) {
-							ongoingReads.remove(componentName);
-            }
-            logger.info("New read....{}", data);
-						return data;
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
+			}
+			return reads;
+		}
+		batch.whenComplete((values, error) -> {
+			for (Map.Entry<String, CompletableFuture<RecordObject>> read : started.entrySet()) {
+				completeRead(read.getKey(), read.getValue(), values == null ? null : values.get(read.getKey()), error);
+			}
+		});
+		return reads;
+	}
+
+	/**
+	 * Starts the periodic reads of the components with a sampling interval
+	 */
+	public void startSampling() {
+		for (DeviceComponent component : profile) {
+			Long interval = SAMPLE_INTERVALS.getOrDefault(component.id, sampleIntervals.get(component.id));
+			if (interval == null || interval <= 0 || !isSensorSupported(component.id)) {
+				continue;
+			}
+			ComponentSampler sampler = new ComponentSampler(this, component.id, interval);
+			if (samplers.putIfAbsent(component.id, sampler) == null) {
+				logger.info("Sampling {} of {} every {} ms", component.id, deviceID, interval);
+				sampler.start();
+			}
+		}
+	}
+
+	/**
+	 * Stops the periodic reads of the components
+	 */
+	public void stopSampling() {
+		for (ComponentSampler sampler : samplers.values()) {
+			sampler.stop();
+		}
+		samplers.clear();
+	}
+
+	/**
+	 * Replaces the sampler of the component with one following the policy
+	 */
+	public void SetSamplingPolicy(String componentID, SamplingPolicyObject policy) {
+		if (policy.minInterval < 0 || policy.maxInterval < policy.minInterval || policy.threshold < 0) {
+			throw new AgileNoResultException("Invalid sampling policy of " + componentID);
+		}
+		if (policy.minInterval > 0 && !isSensorSupported(componentID)) {
+			throw new AgileNoResultException("Component not supported: " + componentID);
+		}
+		logger.info("Sampling policy of {}: interval {} - {} ms, threshold {}", componentID, policy.minInterval,
+				policy.maxInterval, policy.threshold);
+		ComponentSampler sampler = null;
+		if (policy.minInterval > 0) {
+			sampler = new ComponentSampler(this, componentID, policy.minInterval, policy.maxInterval,
+					policy.threshold);
+		}
+		ComponentSampler previous = sampler != null ? samplers.put(componentID, sampler)
+				: samplers.remove(componentID);
+		if (previous != null) {
+			previous.stop();
+		}
+		if (sampler != null) {
+			sampler.start();
+		}
+	}
+
+	/**
+	 * Returns the sampling policy of the component and its current interval
+	 */
+	public SamplingObject Sampling(String componentID) {
+		ComponentSampler sampler = samplers.get(componentID);
+		if (sampler == null) {
+			throw new AgileNoResultException("Component not sampled: " + componentID);
+		}
+		return new SamplingObject(deviceID, componentID, sampler.getMinInterval(), sampler.getMaxInterval(),
+				sampler.getThreshold(), sampler.getInterval());
+	}
+
+	/**
+	 * @param componentName
+	 * @return the numeric value of the last read of the component, NaN if
+	 *         unknown
+	 */
+	double lastValue(String componentName) {
+		RecordObject lastRead = lastReadStore.get(componentName);
+		return lastRead == null ? Double.NaN : parseValue(lastRead.value);
+	}
+
+	/**
+	 * Refreshes the last read of the component, unless a read or a
+	 * notification already did it during the last half interval
+	 * 
+	 * @param componentName
+	 * @param interval
+	 *            sampling interval of the component
+	 */
+	void sample(String componentName, long interval) {
+		RecordObject lastRead = lastReadStore.get(componentName);
+		if (lastRead != null && System.currentTimeMillis() - lastRead.getLastUpdate() < interval / 2) {
+			return;
+		}
+		if (!isConnected()) {
+			return;
+		}
+		startRead(componentName).whenComplete((record, error) -> {
+			if (error != null) {
+				logger.debug("Failed to sample {} of {}", componentName, deviceID);
+			}
+		});
+	}
+
+	/**
+	 * Parses a list of component values, e.g. {@code Temperature:1000,Humidity:2000}
+	 * 
+	 * @param property
+	 * @return the value of each component
+	 */
+	protected static Map<String, Long> parseComponentValues(String property) {
+		Map<String, Long> values = new HashMap<String, Long>();
+		for (String entry : property.split(",")) {
+			String[] nameAndValue = entry.split(":");
+			if (nameAndValue.length != 2) {
+				continue;
+			}
+			try {
+				values.put(nameAndValue[0].trim(), Long.parseLong(nameAndValue[1].trim()));
+			} catch (NumberFormatException e) {
+				LoggerFactory.getLogger(DeviceImp.class).warn("Invalid component value {}", entry);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Completes the read of the component, so that all the readers waiting on
+	 * it get the same record or the same failure
+	 *
+	 * @param componentName
+	 * @param read
+	 * @param value
+	 *            the formatted value, null if the read failed
+	 * @param error
+	 *            the failure, null if the read succeeded
+	 */
+	private void completeRead(String componentName, CompletableFuture<RecordObject> read, String value,
+			Throwable error) {
+		ongoingReads.remove(componentName, read);
+		if (error instanceof CompletionException && error.getCause() != null) {
+			error = error.getCause();
+		}
+		if (error == null && value == null) {
+			error = new AgileNoResultException("Unable to read value " + componentName);
+		}
+		if (error != null) {
+			if (!(error instanceof AgileNoResultException)) {
+				// the protocol failed, the device may be gone
+				invalidateStatus();
+			}
+			read.completeExceptionally(error);
+			return;
+		}
+		RecordObject recObj = new RecordObject(deviceID, componentName, value, getMeasurementUnit(componentName), "",
+				System.currentTimeMillis());
+		storeRecord(recObj);
+		logger.info("New read....{}", recObj);
+		read.complete(recObj);
+	}
+
+	/**
+	 * Keeps the given record as the last value of its component and appends
+	 * numeric values to the history of the component
+	 * 
+	 * @param recObj
+	 */
+	protected void storeRecord(RecordObject recObj) {
+		storeRecord(recObj, parseValue(recObj.value));
+	}
+
+	/**
+	 * Same as {@link #storeRecord(RecordObject)} for a record whose numeric
+	 * value is already known
+	 * 
+	 * @param recObj
+	 * @param value
+	 *            the numeric value of the record, NaN if it is not a number
+	 */
+	protected void storeRecord(RecordObject recObj, double value) {
+		data = recObj;
+		lastReadStore.put(recObj.componentID, recObj);
+		if (Double.isNaN(value)) {
+			return;
+		}
+		histories.computeIfAbsent(recObj.componentID, c -> new ComponentHistory()).add(recObj.lastUpdate, value);
+	}
+
+	/**
+	 * Sends a NewSubscribeValueSignal with the given record, unless the
+	 * publish filter of its component suppresses it
+	 * 
+	 * @param recObj
+	 */
+	protected void publishRecord(RecordObject recObj) {
+		publishRecord(recObj, parseValue(recObj.value));
+	}
+
+	/**
+	 * Same as {@link #publishRecord(RecordObject)} for a record whose numeric
+	 * value is already known
+	 * 
+	 * @param recObj
+	 * @param value
+	 *            the numeric value of the record, NaN if it is not a number
+	 */
+	protected void publishRecord(RecordObject recObj, double value) {
+		PublishFilter filter = publishFilters.computeIfAbsent(recObj.componentID, c -> new PublishFilter());
+		if (!filter.accept(value, recObj.lastUpdate)) {
+			logger.debug("Suppressed notification component {} value {}", recObj.componentID, recObj.value);
+			return;
+		}
+		if (batchedComponents.contains(recObj.componentID)) {
+			getRecordBatcher().add(recObj);
+			if (!publishBatchedRecords) {
+				return;
+			}
+		}
+		try {
+			Device.NewSubscribeValueSignal newRecordSignal = new Device.NewSubscribeValueSignal(
+					AGILE_NEW_RECORD_SUBSCRIBE_SIGNAL_PATH, recObj);
+			connection.sendSignal(newRecordSignal);
+		} catch (DBusException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private RecordBatcher<RecordObject> getRecordBatcher() {
+		if (recordBatcher == null) {
+			synchronized (this) {
+				if (recordBatcher == null) {
+					recordBatcher = new RecordBatcher<RecordObject>(this::publishBatch);
 				}
 			}
 		}
- 			throw new AgileNoResultException("Unable to read value "+componentName );
+		return recordBatcher;
 	}
 
 	/**
-	 * Check if the last component read was made recently
+	 * Sends a NewSubscribeBatchSignal with the given records
 	 * 
-	 * @param record
+	 * @param records
+	 */
+	private void publishBatch(List<RecordObject> records) {
+		try {
+			DeviceExtension.NewSubscribeBatchSignal newBatchSignal = new DeviceExtension.NewSubscribeBatchSignal(
+					AGILE_NEW_RECORD_SUBSCRIBE_SIGNAL_PATH, records);
+			connection.sendSignal(newBatchSignal);
+		} catch (DBusException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return the numeric value of a record, NaN if it is not a number
+	 */
+	protected static double parseValue(String value) {
+		if (value == null) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Waits at most {@link #readTimeout} milliseconds for the given read to
+	 * complete
+	 *
+	 * @param componentName
+	 * @param read
 	 * @return
 	 */
-	private boolean isRecentRead(RecordObject record) {
-		if (record != null) {
-			long currentTime = System.currentTimeMillis();
-			long recordTime = record.getLastUpdate();
-			if (((currentTime - recordTime) / 1000) < 2) {
-				return true;
+	private RecordObject awaitRead(String componentName, CompletableFuture<RecordObject> read) {
+		try {
+			return read.get(readTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw new AgileNoResultException("Timed out reading value " + componentName);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof AgileNoResultException) {
+				throw (AgileNoResultException) e.getCause();
 			}
+			logger.error("Error in reading value from {}", componentName, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		return false;
+		throw new AgileNoResultException("Unable to read value " + componentName);
 	}
 
 	/**
-	 * Check if there is an ongoing read on this component
+	 * Returns the cache policy of the given component, falling back to the
+	 * default policy of the device type
 	 * 
-	 * @param component
+	 * @param componentName
 	 * @return
 	 */
-	private boolean isReadOngoing(String component) {
-		synchronized (ongoingReads) {
-			return ongoingReads.containsKey(component);
+	protected ReadCachePolicy getReadCachePolicy(String componentName) {
+		ReadCachePolicy cachePolicy = readCachePolicies.get(componentName);
+		return cachePolicy != null ? cachePolicy : defaultReadCachePolicy;
+	}
+
+	/**
+	 * Sets the publish policy of the component, resetting its counters. The
+	 * policy filters the updates of the component for every subscriber, not
+	 * only the caller, and is reset to the default when the last subscription
+	 * to the component is removed.
+	 */
+	public void SetPublishPolicy(String componentID, PublishPolicyObject policy) {
+		logger.info("Publish policy of {}: deadband {} / {}, min interval {} ms, max rate {}/s, heartbeat {} ms",
+				componentID, policy.absoluteDeadband, policy.relativeDeadband, policy.minInterval, policy.maxRate,
+				policy.heartbeat);
+		publishFilters.put(componentID, new PublishFilter(policy.absoluteDeadband, policy.relativeDeadband,
+				policy.minInterval, policy.maxRate, policy.heartbeat));
+	}
+
+	/**
+	 * Returns the number of published and suppressed updates of the component
+	 */
+	public PublishStatsObject PublishStats(String componentID) {
+		PublishFilter filter = publishFilters.get(componentID);
+		if (filter == null) {
+			throw new AgileNoResultException("No updates published for " + componentID);
 		}
+		return new PublishStatsObject(deviceID, componentID, filter.getPublished(), filter.getSuppressed());
+	}
+
+	/**
+	 * Returns the state of the notification queue of the device
+	 */
+	public NotificationStatsObject NotificationStats() {
+		return new NotificationStatsObject(deviceID, notifications.getDepth(), notifications.getCapacity(),
+				notifications.getOverflowPolicy().name(), notifications.getReceived(), notifications.getProcessed(),
+				notifications.getDropped(), notifications.getConflated());
+	}
+
+	/**
+	 * Returns the state of the GATT operation queue, only kept by BLE devices
+	 */
+	public GattQueueStatsObject GattQueueStats() {
+		throw new AgileNoResultException("No GATT operations for " + deviceID);
 	}
 
 	/**
@@ -361,6 +987,34 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	 */
 	protected abstract String DeviceRead(String componentName);
 
+	/**
+	 * Non-blocking read of the component. The default implementation runs
+	 * {@link #DeviceRead(String)} on the shared read executor; device types
+	 * that have to wait for the device (e.g. for a sensor to warm up) should
+	 * override it and schedule the wait instead of sleeping.
+	 * 
+	 * @param componentName
+	 * @return a future completed with the formatted value
+	 */
+	protected CompletableFuture<String> DeviceReadAsync(String componentName) {
+		return CompletableFuture.supplyAsync(() -> DeviceRead(componentName), DeviceExecutors.readExecutor());
+	}
+
+	/**
+	 * Non-blocking read of several components at once, used by
+	 * {@link #ReadAll()} for the components missing from the cache. Device
+	 * types override it when reading the components together is cheaper than
+	 * reading them one by one, e.g. when they share a warm up.
+	 * 
+	 * @param componentNames
+	 * @return a future completed with the formatted value of each component
+	 *         that could be read, or null if the device type reads its
+	 *         components one by one
+	 */
+	protected CompletableFuture<Map<String, String>> DeviceReadAllAsync(List<String> componentNames) {
+		return null;
+	}
+
 	/**
 	 * Get measurement unit method to be implemented by child class
 	 * 
@@ -407,20 +1061,183 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	public void Unsubscribe(String component) throws DBusException {
 	}
 
+	/**
+	 * Subscribes to several components at once. The device is checked once,
+	 * then the protocol subscriptions of the components are started together
+	 * when the device type supports it, see {@link #getAsyncSubscribe()}, or
+	 * made one by one otherwise.
+	 */
+	@Override
+	public List<SubscriptionResultObject> SubscribeAll(List<String> componentIDs) {
+		List<String> components = getBulkComponents(componentIDs);
+		logger.info("Subscribe to {} of {}", components, deviceID);
+		checkSubscribe();
+		SubscriptionCounter.AsyncTransition subscribe = getAsyncSubscribe();
+		if (subscribe == null) {
+			return forEachComponent(components, componentName -> Subscribe(componentName));
+		}
+		Map<String, List<String>> subscriptions = new LinkedHashMap<String, List<String>>();
+		Map<String, String> errors = new HashMap<String, String>();
+		groupByKey(components, subscriptions, errors);
+		try {
+			Map<String, Throwable> failures = subscribedComponents.subscribeAll(subscriptions, componentName -> {
+				synchronized (signalHandlerLock) {
+					addNewRecordSignalHandler();
+				}
+				return subscribe.start(componentName);
+			}, getAsyncUnsubscribe(), subscribeAllTimeout);
+			collectErrors(subscriptions, failures, errors);
+		} finally {
+			removeIdleNewRecordSignalHandler();
+		}
+		return toResults(components, errors);
+	}
+
+	/**
+	 * Unsubscribes from several components at once, the counterpart of
+	 * {@link #SubscribeAll(List)}
+	 */
+	@Override
+	public List<SubscriptionResultObject> UnsubscribeAll(List<String> componentIDs) {
+		List<String> components = getBulkComponents(componentIDs);
+		logger.info("Unsubscribe from {} of {}", components, deviceID);
+		checkSubscribe();
+		SubscriptionCounter.AsyncTransition unsubscribe = getAsyncUnsubscribe();
+		if (unsubscribe == null) {
+			return forEachComponent(components, componentName -> {
+				try {
+					Unsubscribe(componentName);
+				} catch (DBusException e) {
+					throw new AgileNoResultException(e.getMessage());
+				}
+			});
+		}
+		Map<String, List<String>> subscriptions = new LinkedHashMap<String, List<String>>();
+		Map<String, String> errors = new HashMap<String, String>();
+		groupByKey(components, subscriptions, errors);
+		try {
+			Map<String, Throwable> failures = subscribedComponents.unsubscribeAll(subscriptions, componentName -> {
+				resetPublishPolicies(componentName);
+				return unsubscribe.start(componentName);
+			}, subscribeAllTimeout);
+			collectErrors(subscriptions, failures, errors);
+		} finally {
+			removeIdleNewRecordSignalHandler();
+		}
+		return toResults(components, errors);
+	}
+
+	/**
+	 * Checks once that the components of the device can be subscribed to by
+	 * SubscribeAll and UnsubscribeAll
+	 */
+	protected void checkSubscribe() {
+		if (deviceProtocol == null || !isConnected()) {
+			throw new AgileNoResultException("Device not connected: " + deviceName);
+		}
+	}
+
+	/**
+	 * Returns the operation enabling the notifications of a component at
+	 * protocol level without waiting for its completion, used by
+	 * {@link #SubscribeAll(List)} to subscribe to the components together
+	 * 
+	 * @return null if the device type subscribes to its components one by one
+	 */
+	protected SubscriptionCounter.AsyncTransition getAsyncSubscribe() {
+		return null;
+	}
+
+	/**
+	 * Returns the operation disabling the notifications of a component at
+	 * protocol level without waiting for its completion, used by
+	 * {@link #UnsubscribeAll(List)}
+	 * 
+	 * @return null if the device type unsubscribes from its components one by
+	 *         one
+	 */
+	protected SubscriptionCounter.AsyncTransition getAsyncUnsubscribe() {
+		return null;
+	}
+
+	private List<String> getBulkComponents(List<String> componentIDs) {
+		if (componentIDs != null && !componentIDs.isEmpty()) {
+			return componentIDs;
+		}
+		List<String> components = new ArrayList<String>();
+		for (DeviceComponent component : profile) {
+			if (isSensorSupported(component.id)) {
+				components.add(component.id);
+			}
+		}
+		return components;
+	}
+
+	private void groupByKey(List<String> components, Map<String, List<String>> subscriptions,
+			Map<String, String> errors) {
+		for (String componentName : components) {
+			if (isSensorSupported(componentName.trim())) {
+				subscriptions.computeIfAbsent(getSubscriptionKey(componentName), k -> new ArrayList<String>())
+						.add(componentName);
+			} else {
+				errors.put(componentName, "Component not supported: " + componentName);
+			}
+		}
+	}
+
+	private void collectErrors(Map<String, List<String>> subscriptions, Map<String, Throwable> failures,
+			Map<String, String> errors) {
+		for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+			logger.warn("Failed to change the subscription to {}: {}", failure.getKey(), failure.getValue().getMessage());
+			for (String componentName : subscriptions.get(failure.getKey())) {
+				errors.put(componentName, String.valueOf(failure.getValue().getMessage()));
+			}
+		}
+	}
+
+	private List<SubscriptionResultObject> forEachComponent(List<String> components,
+			Consumer<String> operation) {
+		Map<String, String> errors = new HashMap<String, String>();
+		for (String componentName : components) {
+			try {
+				operation.accept(componentName);
+			} catch (RuntimeException e) {
+				errors.put(componentName, String.valueOf(e.getMessage()));
+			}
+		}
+		return toResults(components, errors);
+	}
+
+	private List<SubscriptionResultObject> toResults(List<String> components, Map<String, String> errors) {
+		List<SubscriptionResultObject> results = new ArrayList<SubscriptionResultObject>(components.size());
+		for (String componentName : components) {
+			String error = errors.get(componentName);
+			results.add(new SubscriptionResultObject(deviceID, componentName, error == null, error == null ? "" : error));
+		}
+		return results;
+	}
+
 	@Override
 	public void Stop() throws DBusException {
 		try {
 			if (isConnected()) {
-				for(String component : subscribedComponents.keySet()){
-					if(subscribedComponents.get(component) >0){
-						Unsubscribe(component);
-					}
+				for(String component : subscribedComponents.subscribed()){
+					Unsubscribe(component);
 				}
 				Disconnect();
 			}
 		} catch (Exception e) {
 			logger.error("Failed to stop device ", e);
 		}
+		stopSampling();
+		notifications.clear();
+		if (recordBatcher != null) {
+			recordBatcher.flush();
+		}
+		for (ComponentHistory history : histories.values()) {
+			history.release();
+		}
+		histories.clear();
 		dbusDisconnect();
 	}
 
@@ -447,20 +1264,8 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 					@Override
 					public void handle(NewRecordSignal sig) {
 						if (address.equals(sig.address)) {
-							String componentName = getComponentName(sig.profile);
-							RecordObject recObj = new RecordObject(deviceID, componentName,
-									formatReading(componentName, sig.record), getMeasurementUnit(componentName), "",
-									System.currentTimeMillis());
-							data = recObj;
-							logger.info("Device notification component {} value {}", componentName, recObj.value);
-							lastReadStore.put(componentName, recObj);
-							try {
-								Device.NewSubscribeValueSignal newRecordSignal = new Device.NewSubscribeValueSignal(
-										AGILE_NEW_RECORD_SUBSCRIBE_SIGNAL_PATH, recObj);
-								connection.sendSignal(newRecordSignal);
-							} catch (DBusException e) {
-								e.printStackTrace();
-							}
+							updateStatus(CONNECTED_STATUS);
+							notifications.offer(sig.profile, sig.record, System.currentTimeMillis());
 						}
 					}
 				};
@@ -508,14 +1313,148 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	}
 
 	/**
-	 * Override by child classes
+	 * Processes a notification taken from the {@link #notifications} queue.
+	 * Device types whose characteristics carry several components override
+	 * it to notify each of them.
+	 * 
+	 * @param profile
+	 *            profile of the notified characteristic
+	 * @param record
+	 *            the raw value notified by the protocol
+	 * @param receiveTime
+	 *            time in milliseconds the notification was received
+	 */
+	protected void processNotification(Map<String, String> profile, byte[] record, long receiveTime) {
+		notifyReading(getComponentName(profile), record, receiveTime);
+	}
+
+	protected void notifyReading(String componentName, byte[] readData) {
+		notifyReading(componentName, readData, System.currentTimeMillis());
+	}
+
+	/**
+	 * Handles a notification of the component: decodes the value, stores it
+	 * and publishes it to the subscribers
+	 * 
+	 * @param componentName
+	 * @param readData
+	 *            the raw value notified by the protocol
+	 * @param receiveTime
+	 *            time in milliseconds the notification was received
+	 */
+	protected void notifyReading(String componentName, byte[] readData, long receiveTime) {
+		double[] values = decodeBuffer.get();
+		int count = decodeReading(componentName, readData, values);
+		String value;
+		double numericValue;
+		if (count < 0) {
+			// device type without typed decoder
+			value = formatReading(componentName, readData);
+			numericValue = parseValue(value);
+			if (skipZeroReadings && !(numericValue != 0)) {
+				return;
+			}
+		} else {
+			if (count == 0 || (skipZeroReadings && isZero(values, count))) {
+				return;
+			}
+			value = formatValues(componentName, values, count);
+			numericValue = count == 1 ? values[0] : Double.NaN;
+		}
+		RecordObject recObj = new RecordObject(deviceID, componentName, value, getMeasurementUnit(componentName), "",
+				receiveTime);
+		logger.debug("Device notification component {} value {}", componentName, value);
+		storeRecord(recObj, numericValue);
+		if (isPublished(componentName)) {
+			publishRecord(recObj, numericValue);
+		}
+	}
+
+	/**
+	 * Checks if the notifications of the component are published to the
+	 * subscribers. Device types that also enable notifications internally,
+	 * e.g. to serve reads, override it so that those notifications are only
+	 * stored.
+	 * 
+	 * @param componentName
+	 * @return
+	 */
+	protected boolean isPublished(String componentName) {
+		return true;
+	}
+
+	/**
+	 * Decodes the raw value of the component into {@code values}: one value
+	 * for scalar components, one per axis for vector ones. Device types
+	 * override it, so that notifications are not formatted and parsed again.
+	 * 
+	 * @param componentName
+	 * @param readData
+	 *            the raw value read or notified
+	 * @param values
+	 *            buffer of at least {@link #MAX_DECODED_VALUES} elements
+	 * @return the number of decoded values, 0 if the raw value cannot be
+	 *         decoded, -1 if the device type only implements
+	 *         {@link #formatReading(String, byte[])}
+	 */
+	protected int decodeReading(String componentName, byte[] readData, double[] values) {
+		return -1;
+	}
+
+	/**
+	 * Formats the raw value of the component. The default implementation
+	 * formats the values of {@link #decodeReading(String, byte[], double[])}.
 	 * 
 	 * @param sensorName
 	 * @param readData
 	 * @return
 	 */
 	protected String formatReading(String sensorName, byte[] readData) {
-		return "";
+		double[] values = decodeBuffer.get();
+		int count = decodeReading(sensorName, readData, values);
+		return count > 0 ? formatValues(sensorName, values, count) : "";
+	}
+
+	/**
+	 * Formats decoded values, as a single number or as an array of numbers
+	 * 
+	 * @param componentName
+	 * @param values
+	 * @param count
+	 * @return
+	 */
+	protected String formatValues(String componentName, double[] values, int count) {
+		if (count == 1) {
+			return formatValue(componentName, values[0]);
+		}
+		StringBuilder value = new StringBuilder("[");
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				value.append(',');
+			}
+			value.append(formatValue(componentName, values[i]));
+		}
+		return value.append(']').toString();
+	}
+
+	/**
+	 * Formats a decoded value
+	 * 
+	 * @param componentName
+	 * @param value
+	 * @return
+	 */
+	protected String formatValue(String componentName, double value) {
+		return Double.toString(value);
+	}
+
+	private static boolean isZero(double[] values, int count) {
+		for (int i = 0; i < count; i++) {
+			if (values[i] != 0) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -526,7 +1465,7 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	 * @return
 	 */
 	protected boolean hasOtherActiveSubscription(String componentName) {
-		return (subscribedComponents.get(componentName) > 0);
+		return subscribedComponents.isSubscribed(getSubscriptionKey(componentName));
 	}
 
 	/**
@@ -536,12 +1475,91 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 	 * @return
 	 */
 	protected boolean hasOtherActiveSubscription() {
-		for (String componentName : subscribedComponents.keySet()) {
-			if (subscribedComponents.get(componentName) > 0) {
-				return true;
+		return subscribedComponents.isAnySubscribed();
+	}
+
+	/**
+	 * Returns the key under which the subscriptions to the component are
+	 * counted. Components notified together share the same key, so that they
+	 * share a single protocol subscription.
+	 * 
+	 * @param componentName
+	 * @return
+	 */
+	protected String getSubscriptionKey(String componentName) {
+		return componentName;
+	}
+
+	/**
+	 * Counts a subscription to the component. The record signal handler is
+	 * installed and {@code subscribe} enables the notifications at protocol
+	 * level when the component had no subscription yet.
+	 * 
+	 * @param componentName
+	 * @param subscribe
+	 * @throws DBusException
+	 */
+	protected void subscribeComponent(String componentName, SubscriptionCounter.Transition subscribe)
+			throws DBusException {
+		try {
+			subscribedComponents.subscribe(getSubscriptionKey(componentName), componentName, () -> {
+				synchronized (signalHandlerLock) {
+					addNewRecordSignalHandler();
+				}
+				subscribe.run();
+			});
+		} catch (DBusException | RuntimeException e) {
+			removeIdleNewRecordSignalHandler();
+			throw e;
+		}
+	}
+
+	/**
+	 * Removes a subscription to the component. {@code unsubscribe} disables
+	 * the notifications at protocol level and the publish policy of the
+	 * component is reset when it was the last subscription, and the record
+	 * signal handler is removed when the device has no more subscriptions.
+	 * 
+	 * @param componentName
+	 * @param unsubscribe
+	 * @throws DBusException
+	 */
+	protected void unsubscribeComponent(String componentName, SubscriptionCounter.Transition unsubscribe)
+			throws DBusException {
+		try {
+			subscribedComponents.unsubscribe(getSubscriptionKey(componentName), () -> {
+				try {
+					unsubscribe.run();
+				} finally {
+					resetPublishPolicies(componentName);
+				}
+			});
+		} finally {
+			removeIdleNewRecordSignalHandler();
+		}
+	}
+
+	/**
+	 * Restores the default publish policy of the components sharing the
+	 * subscription of the component, once nobody is subscribed to them
+	 * 
+	 * @param componentName
+	 */
+	private void resetPublishPolicies(String componentName) {
+		String key = getSubscriptionKey(componentName);
+		for (String componentID : publishFilters.keySet()) {
+			if (key.equals(getSubscriptionKey(componentID))) {
+				publishFilters.put(componentID, new PublishFilter());
+			}
+		}
+	}
+
+	private void removeIdleNewRecordSignalHandler() {
+		synchronized (signalHandlerLock) {
+			if (!hasOtherActiveSubscription()) {
+				removeNewRecordSignalHandler();
 			}
 		}
-		return false;
 	}
 
 	/**
@@ -554,4 +1572,19 @@ public abstract class DeviceImp extends AbstractAgileObject implements Device {
 		return null;
 	}
 
+
+	/**
+	 * A status of the device and the time until which it is trusted
+	 */
+	private static final class CachedStatus {
+
+		final StatusType status;
+
+		final long expiry;
+
+		CachedStatus(StatusType status, long expiry) {
+			this.status = status;
+			this.expiry = expiry;
+		}
+	}
 }
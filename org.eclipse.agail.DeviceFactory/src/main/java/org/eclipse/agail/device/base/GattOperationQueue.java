@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.eclipse.agail.Protocol;
+import org.freedesktop.dbus.exceptions.DBusException;
+
+/**
+ * Ordered queue of the GATT operations of a device.
+ *
+ * Operations on the same characteristic run one at a time in submission
+ * order, while operations on different characteristics are pipelined, up to
+ * {@code maxInFlight} of them waiting for their reply at once. Redundant
+ * operations are coalesced: a write queued right after a write to the same
+ * characteristic that has not started yet replaces its payload (the last
+ * write wins and both callers get its outcome), and a read queued right after
+ * a read of the same characteristic shares it.
+ *
+ * An operation that gets no reply within {@code timeout} milliseconds fails
+ * with a {@link TimeoutException}, so that it does not hold the
+ * characteristic.
+ */
+public class GattOperationQueue {
+
+	public enum Type {
+		READ("Read", (protocol, address, profile, payload) -> protocol.Read(address, profile)),
+		NOTIFICATION_READ("NotificationRead",
+				(protocol, address, profile, payload) -> protocol.NotificationRead(address, profile)),
+		WRITE("Write", (protocol, address, profile, payload) -> {
+			protocol.Write(address, profile, payload);
+			return null;
+		}),
+		SUBSCRIBE("Subscribe", (protocol, address, profile, payload) -> {
+			protocol.Subscribe(address, profile);
+			return null;
+		}),
+		UNSUBSCRIBE("Unsubscribe", (protocol, address, profile, payload) -> {
+			protocol.Unsubscribe(address, profile);
+			return null;
+		});
+
+		/**
+		 * Name of the protocol method, for the logs
+		 */
+		final String method;
+
+		/**
+		 * Call of the protocol running the operation
+		 */
+		final Call call;
+
+		Type(String method, Call call) {
+			this.method = method;
+			this.call = call;
+		}
+	}
+
+	/**
+	 * A call of the protocol running an operation
+	 */
+	@FunctionalInterface
+	interface Call {
+		Object call(Protocol protocol, String address, Map<String, String> profile, byte[] payload)
+				throws DBusException;
+	}
+
+	/**
+	 * Default maximum number of operations waiting for their reply at once
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = Integer.getInteger("agile.device.gatt.inflight", 4);
+
+	/**
+	 * Default maximum time in milliseconds to wait for the reply of an
+	 * operation
+	 */
+	public static final long DEFAULT_TIMEOUT = Long.getLong("agile.device.gatt.timeout", 10000L);
+
+	private final String address;
+
+	private final Supplier<Protocol> protocol;
+
+	private final int maxInFlight;
+
+	private final long timeout;
+
+	private final LinkedList<Operation> pending = new LinkedList<Operation>();
+
+	/**
+	 * Characteristics with an operation in flight
+	 */
+	private final Set<Map<String, String>> busy = new HashSet<Map<String, String>>();
+
+	private int inFlight;
+
+	private long completed;
+
+	private long failed;
+
+	private long coalesced;
+
+	private long totalQueueLatency;
+
+	private long maxQueueLatency;
+
+	private long totalServiceTime;
+
+	/**
+	 * @param address
+	 * @param protocol
+	 *            the protocol of the device, the operations are run with it on
+	 *            the {@link DeviceExecutors#protocolExecutor()}
+	 */
+	public GattOperationQueue(String address, Supplier<Protocol> protocol) {
+		this(address, protocol, DEFAULT_MAX_IN_FLIGHT, DEFAULT_TIMEOUT);
+	}
+
+	public GattOperationQueue(String address, Supplier<Protocol> protocol, int maxInFlight, long timeout) {
+		this.address = address;
+		this.protocol = protocol;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Queues an operation on a characteristic
+	 * 
+	 * @param type
+	 * @param profile
+	 *            profile of the characteristic
+	 * @param payload
+	 *            value written by a {@link Type#WRITE}, null otherwise
+	 * @return a future completed with the reply of the protocol, the value for
+	 *         the reads
+	 */
+	public CompletableFuture<Object> submit(Type type, Map<String, String> profile, byte[] payload) {
+		Operation operation = new Operation(type, profile, payload);
+		List<Operation> started;
+		synchronized (this) {
+			Operation last = lastPending(profile);
+			if (last != null && last.type == type && type != Type.SUBSCRIBE && type != Type.UNSUBSCRIBE) {
+				// writes and reads of the characteristic not started yet
+				if (type == Type.WRITE) {
+					last.payload = payload;
+				}
+				coalesced++;
+				return last.result;
+			}
+			pending.add(operation);
+			started = takeStartable();
+		}
+		start(started);
+		return operation.result;
+	}
+
+	private Operation lastPending(Map<String, String> profile) {
+		for (Iterator<Operation> it = pending.descendingIterator(); it.hasNext();) {
+			Operation operation = it.next();
+			if (operation.profile.equals(profile)) {
+				return operation;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Takes the pending operations that can be started, in order
+	 */
+	private List<Operation> takeStartable() {
+		List<Operation> started = new ArrayList<Operation>();
+		Set<Map<String, String>> blocked = new HashSet<Map<String, String>>();
+		long now = System.currentTimeMillis();
+		for (Iterator<Operation> it = pending.iterator(); it.hasNext() && inFlight < maxInFlight;) {
+			Operation operation = it.next();
+			if (busy.contains(operation.profile) || blocked.contains(operation.profile)) {
+				// keeps the order of the operations on the characteristic
+				blocked.add(operation.profile);
+				continue;
+			}
+			it.remove();
+			busy.add(operation.profile);
+			inFlight++;
+			operation.startTime = now;
+			long queueLatency = now - operation.submitTime;
+			totalQueueLatency += queueLatency;
+			maxQueueLatency = Math.max(maxQueueLatency, queueLatency);
+			started.add(operation);
+		}
+		return started;
+	}
+
+	private void start(List<Operation> operations) {
+		for (Operation operation : operations) {
+			CompletableFuture<Object> reply;
+			try {
+				reply = CompletableFuture.supplyAsync(() -> run(operation), DeviceExecutors.protocolExecutor());
+			} catch (RejectedExecutionException e) {
+				reply = new CompletableFuture<Object>();
+				reply.completeExceptionally(e);
+			}
+			CompletableFuture<Object> call = reply;
+			ScheduledFuture<?> timer = DeviceExecutors.scheduler().schedule(
+					() -> call.completeExceptionally(new TimeoutException(
+							operation.type.method + " timed out after " + timeout + " ms")),
+					timeout, TimeUnit.MILLISECONDS);
+			call.whenComplete((result, error) -> {
+				timer.cancel(false);
+				finish(operation, result, error);
+			});
+		}
+	}
+
+	/**
+	 * Runs the operation with the protocol of the device, on a thread of the
+	 * protocol executor
+	 */
+	private Object run(Operation operation) {
+		Protocol current = protocol.get();
+		if (current == null) {
+			throw new IllegalStateException("No protocol to run " + operation.type.method);
+		}
+		try {
+			return operation.type.call.call(current, address, operation.profile, operation.payload);
+		} catch (DBusException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private void finish(Operation operation, Object result, Throwable error) {
+		List<Operation> started;
+		synchronized (this) {
+			inFlight--;
+			busy.remove(operation.profile);
+			totalServiceTime += System.currentTimeMillis() - operation.startTime;
+			if (error != null) {
+				failed++;
+			} else {
+				completed++;
+			}
+			started = takeStartable();
+		}
+		if (error != null) {
+			operation.result.completeExceptionally(error);
+		} else {
+			operation.result.complete(result);
+		}
+		start(started);
+	}
+
+	public synchronized int getDepth() {
+		return pending.size();
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	public synchronized long getCompleted() {
+		return completed;
+	}
+
+	public synchronized long getFailed() {
+		return failed;
+	}
+
+	public synchronized long getCoalesced() {
+		return coalesced;
+	}
+
+	/**
+	 * @return mean time in milliseconds the operations waited in the queue
+	 */
+	public synchronized long getMeanQueueLatency() {
+		long started = completed + failed + inFlight;
+		return started == 0 ? 0 : totalQueueLatency / started;
+	}
+
+	public synchronized long getMaxQueueLatency() {
+		return maxQueueLatency;
+	}
+
+	/**
+	 * @return mean time in milliseconds the operations waited for their reply
+	 */
+	public synchronized long getMeanServiceTime() {
+		long done = completed + failed;
+		return done == 0 ? 0 : totalServiceTime / done;
+	}
+
+	private static class Operation {
+
+		final Type type;
+
+		final Map<String, String> profile;
+
+		byte[] payload;
+
+		final long submitTime = System.currentTimeMillis();
+
+		long startTime;
+
+		final CompletableFuture<Object> result = new CompletableFuture<Object>();
+
+		Operation(Type type, Map<String, String> profile, byte[] payload) {
+			this.type = type;
+			this.profile = profile;
+			this.payload = payload;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer holding a large number of periodic tasks with a coarse resolution.
+ * Tasks are hashed by deadline into the slots of a wheel, which advances
+ * by one slot every {@code tickDuration} milliseconds on the given scheduler,
+ * so that scheduling and cancelling cost O(1) and no thread is needed per
+ * task.
+ *
+ * Expired tasks run on the scheduler thread and must be short.
+ */
+public final class HashedWheelTimer {
+
+	private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	private final ScheduledExecutorService scheduler;
+
+	private final long tickDuration;
+
+	private final Timeout[] wheel;
+
+	private final int mask;
+
+	/**
+	 * Timeouts scheduled since the last tick, added to the wheel by the tick
+	 */
+	private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+
+	private final AtomicBoolean started = new AtomicBoolean();
+
+	private volatile long startTime;
+
+	/**
+	 * Number of ticks processed, only used by the tick
+	 */
+	private long tick;
+
+	/**
+	 * @param scheduler
+	 *            scheduler running the ticks and the expired tasks
+	 * @param tickDuration
+	 *            duration of a tick in milliseconds
+	 * @param wheelSize
+	 *            number of slots of the wheel, rounded up to a power of two
+	 */
+	public HashedWheelTimer(ScheduledExecutorService scheduler, long tickDuration, int wheelSize) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("Invalid tick duration " + tickDuration);
+		}
+		this.scheduler = scheduler;
+		this.tickDuration = tickDuration;
+		int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+		this.wheel = new Timeout[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Schedules a task
+	 * 
+	 * @param task
+	 * @param delay
+	 *            delay in milliseconds
+	 * @return the handle to cancel the task
+	 */
+	public Timeout schedule(Runnable task, long delay) {
+		start();
+		Timeout timeout = new Timeout(task, System.currentTimeMillis() + Math.max(0, delay));
+		pending.add(timeout);
+		return timeout;
+	}
+
+	private void start() {
+		if (started.compareAndSet(false, true)) {
+			startTime = System.currentTimeMillis();
+			scheduler.scheduleAtFixedRate(this::advance, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Processes the ticks elapsed since the last run, catching up if the
+	 * scheduler was late
+	 */
+	private void advance() {
+		try {
+			long elapsedTicks = (System.currentTimeMillis() - startTime) / tickDuration;
+			while (tick <= elapsedTicks) {
+				transferPending();
+				expire(tick);
+				tick++;
+			}
+		} catch (Throwable e) {
+			// an exception would cancel the periodic tick
+			logger.error("Error in timer tick", e);
+		}
+	}
+
+	private void transferPending() {
+		Timeout timeout;
+		while ((timeout = pending.poll()) != null) {
+			if (timeout.cancelled) {
+				continue;
+			}
+			long ticks = Math.max(tick, (timeout.deadline - startTime + tickDuration - 1) / tickDuration);
+			timeout.rounds = (ticks - tick) / wheel.length;
+			int slot = (int) (ticks & mask);
+			timeout.next = wheel[slot];
+			wheel[slot] = timeout;
+		}
+	}
+
+	private void expire(long tick) {
+		int slot = (int) (tick & mask);
+		Timeout previous = null;
+		Timeout timeout = wheel[slot];
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			boolean remove = timeout.cancelled;
+			if (!remove && timeout.rounds-- <= 0) {
+				remove = true;
+				try {
+					timeout.task.run();
+				} catch (Throwable e) {
+					logger.error("Error in timer task", e);
+				}
+			}
+			if (remove) {
+				timeout.next = null;
+				if (previous == null) {
+					wheel[slot] = next;
+				} else {
+					previous.next = next;
+				}
+			} else {
+				previous = timeout;
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * A task scheduled on the timer
+	 */
+	public static final class Timeout {
+
+		private final Runnable task;
+
+		private final long deadline;
+
+		private volatile boolean cancelled;
+
+		/**
+		 * Remaining turns of the wheel before the task expires
+		 */
+		private long rounds;
+
+		private Timeout next;
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels the task, unless it already ran
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+}
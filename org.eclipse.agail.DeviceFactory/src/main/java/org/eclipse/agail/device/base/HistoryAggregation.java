@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.Arrays;
+
+import org.eclipse.agail.api.object.AggregateObject;
+
+/**
+ * Accumulates samples or rollup buckets, in time order, into fixed windows
+ * aligned on the epoch
+ */
+class HistoryAggregation {
+
+	private final long window;
+
+	private long[] starts = new long[16];
+
+	private double[] min = new double[16];
+
+	private double[] max = new double[16];
+
+	private double[] sum = new double[16];
+
+	private double[] last = new double[16];
+
+	private long[] count = new long[16];
+
+	private int size;
+
+	HistoryAggregation(long window) {
+		this.window = window;
+	}
+
+	void add(long timestamp, double value) {
+		add(timestamp, value, value, value, 1, value);
+	}
+
+	void add(long timestamp, double min, double max, double sum, long count, double last) {
+		long start = timestamp - Math.floorMod(timestamp, window);
+		if (size > 0 && starts[size - 1] == start) {
+			int i = size - 1;
+			this.min[i] = Math.min(this.min[i], min);
+			this.max[i] = Math.max(this.max[i], max);
+			this.sum[i] += sum;
+			this.count[i] += count;
+			this.last[i] = last;
+			return;
+		}
+		if (size == starts.length) {
+			int newLength = size * 2;
+			starts = Arrays.copyOf(starts, newLength);
+			this.min = Arrays.copyOf(this.min, newLength);
+			this.max = Arrays.copyOf(this.max, newLength);
+			this.sum = Arrays.copyOf(this.sum, newLength);
+			this.last = Arrays.copyOf(this.last, newLength);
+			this.count = Arrays.copyOf(this.count, newLength);
+		}
+		starts[size] = start;
+		this.min[size] = min;
+		this.max[size] = max;
+		this.sum[size] = sum;
+		this.count[size] = count;
+		this.last[size] = last;
+		size++;
+	}
+
+	AggregateObject toAggregateObject(String deviceID, String componentID, String unit) {
+		double[] mean = new double[size];
+		for (int i = 0; i < size; i++) {
+			mean[i] = sum[i] / count[i];
+		}
+		return new AggregateObject(deviceID, componentID, unit, window, Arrays.copyOf(starts, size),
+				Arrays.copyOf(min, size), Arrays.copyOf(max, size), mean, Arrays.copyOf(count, size),
+				Arrays.copyOf(last, size));
+	}
+}
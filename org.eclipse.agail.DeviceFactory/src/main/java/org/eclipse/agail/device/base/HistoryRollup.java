@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+/**
+ * Ring of fixed size buckets holding the minimum, maximum, sum, count and
+ * last value of the samples of a component, used by {@link ComponentHistory}
+ * to aggregate long periods without keeping every sample. Like the history
+ * itself, the arrays grow on demand within the shared memory budget.
+ * 
+ * Not thread safe, guarded by the owning history.
+ */
+class HistoryRollup {
+
+	/**
+	 * Bytes needed by a bucket: start, minimum, maximum, sum and last value
+	 * plus an int count
+	 */
+	private static final int BUCKET_SIZE = 44;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Length of a bucket in milliseconds
+	 */
+	final long resolution;
+
+	private final int capacity;
+
+	private long[] starts = new long[0];
+
+	private double[] min = new double[0];
+
+	private double[] max = new double[0];
+
+	private double[] sum = new double[0];
+
+	private double[] last = new double[0];
+
+	private int[] count = new int[0];
+
+	/**
+	 * Index of the next bucket to write
+	 */
+	private int head;
+
+	private int size;
+
+	HistoryRollup(long resolution, int capacity) {
+		this.resolution = resolution;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Folds a sample into its bucket. Samples must be added in time order.
+	 * 
+	 * @param timestamp
+	 * @param value
+	 */
+	void add(long timestamp, double value) {
+		long start = timestamp - Math.floorMod(timestamp, resolution);
+		if (size > 0) {
+			int i = index(size - 1);
+			if (starts[i] == start) {
+				min[i] = Math.min(min[i], value);
+				max[i] = Math.max(max[i], value);
+				sum[i] += value;
+				count[i]++;
+				last[i] = value;
+				return;
+			}
+		}
+		if (size == starts.length && !grow()) {
+			if (size == 0) {
+				return;
+			}
+			// full: overwrite the oldest bucket
+			size--;
+		}
+		starts[head] = start;
+		min[head] = value;
+		max[head] = value;
+		sum[head] = value;
+		count[head] = 1;
+		last[head] = value;
+		head = (head + 1) % starts.length;
+		size++;
+	}
+
+	/**
+	 * @return start time of the oldest bucket, Long.MAX_VALUE if there is none
+	 */
+	long oldest() {
+		return size == 0 ? Long.MAX_VALUE : starts[index(0)];
+	}
+
+	/**
+	 * Adds the buckets starting in [from, to) to the aggregation
+	 * 
+	 * @param aggregation
+	 * @param from
+	 * @param to
+	 */
+	void aggregate(HistoryAggregation aggregation, long from, long to) {
+		int end = to == Long.MAX_VALUE ? size : lowerBound(to);
+		for (int i = lowerBound(from); i < end; i++) {
+			int j = index(i);
+			aggregation.add(starts[j], min[j], max[j], sum[j], count[j], last[j]);
+		}
+	}
+
+	/**
+	 * Drops the buckets and gives the reserved memory back to the budget
+	 */
+	void release() {
+		ComponentHistory.free((long) starts.length * BUCKET_SIZE);
+		starts = new long[0];
+		min = new double[0];
+		max = new double[0];
+		sum = new double[0];
+		last = new double[0];
+		count = new int[0];
+		head = 0;
+		size = 0;
+	}
+
+	private boolean grow() {
+		int length = starts.length;
+		if (length >= capacity) {
+			return false;
+		}
+		int newLength = Math.min(capacity, Math.max(INITIAL_CAPACITY, length * 2));
+		if (!ComponentHistory.reserve((long) (newLength - length) * BUCKET_SIZE)) {
+			return false;
+		}
+		long[] newStarts = new long[newLength];
+		double[] newMin = new double[newLength];
+		double[] newMax = new double[newLength];
+		double[] newSum = new double[newLength];
+		double[] newLast = new double[newLength];
+		int[] newCount = new int[newLength];
+		for (int i = 0; i < size; i++) {
+			int j = index(i);
+			newStarts[i] = starts[j];
+			newMin[i] = min[j];
+			newMax[i] = max[j];
+			newSum[i] = sum[j];
+			newLast[i] = last[j];
+			newCount[i] = count[j];
+		}
+		starts = newStarts;
+		min = newMin;
+		max = newMax;
+		sum = newSum;
+		last = newLast;
+		count = newCount;
+		head = size;
+		return true;
+	}
+
+	private int index(int i) {
+		int start = head - size;
+		if (start < 0) {
+			start += starts.length;
+		}
+		return (start + i) % starts.length;
+	}
+
+	private int lowerBound(long timestamp) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[index(mid)] < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
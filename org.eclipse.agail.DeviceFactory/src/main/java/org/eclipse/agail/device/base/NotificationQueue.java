@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of the raw notifications received by a device, so that they
+ * are decoded and published out of the D-Bus dispatch thread.
+ *
+ * The queue is drained by at most one task at a time on the given executor,
+ * which keeps the notifications of the device in order, and the task gives
+ * the executor back after {@link #DRAIN_BATCH} notifications so that a busy
+ * device does not starve the others. When the queue is full the oldest
+ * notification is dropped, or with {@link OverflowPolicy#CONFLATE} the queued
+ * notification of the same characteristic is replaced by the new one.
+ */
+public class NotificationQueue {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationQueue.class);
+
+	public enum OverflowPolicy {
+		DROP_OLDEST, CONFLATE
+	}
+
+	/**
+	 * Processes a notification taken from the queue
+	 */
+	@FunctionalInterface
+	public interface Processor {
+		void process(Map<String, String> profile, byte[] record, long receiveTime);
+	}
+
+	/**
+	 * Default maximum number of notifications waiting in the queue of a device
+	 */
+	public static final int DEFAULT_CAPACITY = Integer.getInteger("agile.device.notify.queue", 64);
+
+	/**
+	 * Default policy applied when the queue of a device is full
+	 */
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = parseOverflowPolicy(
+			System.getProperty("agile.device.notify.overflow"));
+
+	/**
+	 * @param value
+	 *            name of a policy, case insensitive
+	 * @return the policy, {@link OverflowPolicy#DROP_OLDEST} if the value is
+	 *         missing or unknown
+	 */
+	static OverflowPolicy parseOverflowPolicy(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return OverflowPolicy.DROP_OLDEST;
+		}
+		try {
+			return OverflowPolicy.valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			logger.warn("Unknown notification overflow policy {}, using {}", value, OverflowPolicy.DROP_OLDEST);
+			return OverflowPolicy.DROP_OLDEST;
+		}
+	}
+
+	/**
+	 * Maximum number of notifications processed by a task before it yields
+	 */
+	static final int DRAIN_BATCH = 16;
+
+	private final Processor processor;
+
+	private final Executor executor;
+
+	private final int capacity;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final ArrayDeque<Notification> queue;
+
+	private boolean draining;
+
+	private long received;
+
+	private long processed;
+
+	private long dropped;
+
+	private long conflated;
+
+	public NotificationQueue(Processor processor, Executor executor) {
+		this(processor, executor, DEFAULT_CAPACITY, DEFAULT_OVERFLOW_POLICY);
+	}
+
+	public NotificationQueue(Processor processor, Executor executor, int capacity, OverflowPolicy overflowPolicy) {
+		this.processor = processor;
+		this.executor = executor;
+		this.capacity = Math.max(1, capacity);
+		this.overflowPolicy = overflowPolicy;
+		this.queue = new ArrayDeque<Notification>(this.capacity);
+	}
+
+	/**
+	 * Queues a notification, without processing it
+	 * 
+	 * @param profile
+	 *            profile of the notified characteristic
+	 * @param record
+	 *            raw value
+	 * @param receiveTime
+	 *            time in milliseconds the notification was received
+	 */
+	public void offer(Map<String, String> profile, byte[] record, long receiveTime) {
+		boolean schedule;
+		synchronized (this) {
+			received++;
+			if (queue.size() >= capacity && !conflate(profile, record, receiveTime)) {
+				queue.poll();
+				dropped++;
+			}
+			if (queue.size() < capacity) {
+				queue.add(new Notification(profile, record, receiveTime));
+			}
+			schedule = !draining;
+			draining = true;
+		}
+		if (schedule) {
+			schedule();
+		}
+	}
+
+	/**
+	 * Replaces the queued notification of the same characteristic, if the
+	 * overflow policy allows it
+	 */
+	private boolean conflate(Map<String, String> profile, byte[] record, long receiveTime) {
+		if (overflowPolicy != OverflowPolicy.CONFLATE) {
+			return false;
+		}
+		for (Iterator<Notification> it = queue.descendingIterator(); it.hasNext();) {
+			Notification notification = it.next();
+			if (notification.profile.equals(profile)) {
+				notification.record = record;
+				notification.receiveTime = receiveTime;
+				conflated++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void schedule() {
+		try {
+			executor.execute(this::drain);
+		} catch (RejectedExecutionException e) {
+			int size;
+			synchronized (this) {
+				size = clear();
+				draining = false;
+			}
+			logger.warn("Notification processing rejected, dropped {} notifications", size);
+		}
+	}
+
+	private void drain() {
+		for (int i = 0; i < DRAIN_BATCH; i++) {
+			Notification notification;
+			synchronized (this) {
+				notification = queue.poll();
+				if (notification == null) {
+					draining = false;
+					return;
+				}
+			}
+			try {
+				processor.process(notification.profile, notification.record, notification.receiveTime);
+			} catch (RuntimeException e) {
+				logger.warn("Failed to process notification", e);
+			}
+			synchronized (this) {
+				processed++;
+			}
+		}
+		schedule();
+	}
+
+	/**
+	 * Drops the queued notifications
+	 * 
+	 * @return the number of notifications dropped
+	 */
+	public synchronized int clear() {
+		int size = queue.size();
+		queue.clear();
+		dropped += size;
+		return size;
+	}
+
+	public synchronized int getDepth() {
+		return queue.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public synchronized long getReceived() {
+		return received;
+	}
+
+	public synchronized long getProcessed() {
+		return processed;
+	}
+
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	public synchronized long getConflated() {
+		return conflated;
+	}
+
+	private static class Notification {
+
+		final Map<String, String> profile;
+
+		byte[] record;
+
+		long receiveTime;
+
+		Notification(Map<String, String> profile, byte[] record, long receiveTime) {
+			this.profile = profile;
+			this.record = record;
+			this.receiveTime = receiveTime;
+		}
+	}
+}
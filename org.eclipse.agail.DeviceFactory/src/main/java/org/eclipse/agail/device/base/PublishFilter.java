@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+/**
+ * Decides which updates of a subscribed component are published with a
+ * NewSubscribeValueSignal, and counts the suppressed ones.
+ * 
+ * An update is suppressed when it comes less than {@code minInterval}
+ * milliseconds after the last published one, when its numeric value moved
+ * by no more than {@code absoluteDeadband} or by no more than
+ * {@code relativeDeadband} times the last published value, or when more than
+ * {@code maxRate} updates per second have already been published (token
+ * bucket). An update coming {@code heartbeat} milliseconds or more after the
+ * last published one is always published. A zero value disables the
+ * corresponding check, so that the default filter publishes every update.
+ */
+public class PublishFilter {
+
+	public final double absoluteDeadband;
+
+	public final double relativeDeadband;
+
+	public final long minInterval;
+
+	public final double maxRate;
+
+	public final long heartbeat;
+
+	private double lastValue = Double.NaN;
+
+	private long lastPublished = -1;
+
+	private double tokens;
+
+	private long lastRefill;
+
+	private long published;
+
+	private long suppressed;
+
+	public PublishFilter() {
+		this(0, 0, 0, 0, 0);
+	}
+
+	public PublishFilter(double absoluteDeadband, double relativeDeadband, long minInterval, double maxRate,
+			long heartbeat) {
+		this.absoluteDeadband = absoluteDeadband;
+		this.relativeDeadband = relativeDeadband;
+		this.minInterval = minInterval;
+		this.maxRate = maxRate;
+		this.heartbeat = heartbeat;
+		this.tokens = Math.max(1, maxRate);
+	}
+
+	/**
+	 * @param value
+	 *            the updated value, NaN if it is not numeric
+	 * @param now
+	 *            current time in milliseconds
+	 * @return true if the update has to be published
+	 */
+	public synchronized boolean accept(double value, long now) {
+		boolean publish = lastPublished < 0 || (heartbeat > 0 && now - lastPublished >= heartbeat)
+				|| (!isThrottled(now) && !isInDeadband(value) && takeToken(now));
+		if (publish) {
+			lastValue = value;
+			lastPublished = now;
+			published++;
+		} else {
+			suppressed++;
+		}
+		return publish;
+	}
+
+	/**
+	 * @return the number of published updates
+	 */
+	public synchronized long getPublished() {
+		return published;
+	}
+
+	/**
+	 * @return the number of suppressed updates
+	 */
+	public synchronized long getSuppressed() {
+		return suppressed;
+	}
+
+	private boolean isThrottled(long now) {
+		return minInterval > 0 && now - lastPublished < minInterval;
+	}
+
+	private boolean isInDeadband(double value) {
+		if (Double.isNaN(value) || Double.isNaN(lastValue)) {
+			return false;
+		}
+		double delta = Math.abs(value - lastValue);
+		return (absoluteDeadband > 0 && delta <= absoluteDeadband)
+				|| (relativeDeadband > 0 && delta <= relativeDeadband * Math.abs(lastValue));
+	}
+
+	private boolean takeToken(long now) {
+		if (maxRate <= 0) {
+			return true;
+		}
+		tokens = Math.min(Math.max(1, maxRate), tokens + (now - lastRefill) * maxRate / 1000);
+		lastRefill = now;
+		if (tokens < 1) {
+			return false;
+		}
+		tokens--;
+		return true;
+	}
+}
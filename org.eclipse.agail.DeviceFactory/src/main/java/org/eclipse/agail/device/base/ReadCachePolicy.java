@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import org.eclipse.agail.object.RecordObject;
+
+/**
+ * Defines for how long the last read of a component is served from the cache
+ * of the device.
+ *
+ * A read younger than {@code ttl} milliseconds is fresh and returned as is.
+ * When {@code maxStale} is greater than zero, an expired read is still returned
+ * for up to {@code maxStale} milliseconds after its expiration while a single
+ * refresh of the component runs in the background (stale-while-revalidate).
+ */
+public class ReadCachePolicy {
+
+	/**
+	 * Time in milliseconds a read is considered fresh
+	 */
+	public final long ttl;
+
+	/**
+	 * Time in milliseconds an expired read can still be served while it is
+	 * refreshed, 0 to disable stale-while-revalidate
+	 */
+	public final long maxStale;
+
+	public ReadCachePolicy(long ttl) {
+		this(ttl, 0);
+	}
+
+	public ReadCachePolicy(long ttl, long maxStale) {
+		this.ttl = ttl;
+		this.maxStale = maxStale;
+	}
+
+	/**
+	 * @param record
+	 *            the last read of the component, can be null
+	 * @param now
+	 *            current time in milliseconds
+	 * @return true if the record can be returned without reading the device
+	 */
+	public boolean isFresh(RecordObject record, long now) {
+		return record != null && now - record.getLastUpdate() < ttl;
+	}
+
+	/**
+	 * @param record
+	 *            the last read of the component, can be null
+	 * @param now
+	 *            current time in milliseconds
+	 * @return true if the expired record can be returned while the component
+	 *         is refreshed in the background
+	 */
+	public boolean isServableStale(RecordObject record, long now) {
+		return maxStale > 0 && record != null && now - record.getLastUpdate() < ttl + maxStale;
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Groups records to be published together: the pending records are flushed
+ * once {@code maxSize} of them are collected, or {@code maxDelay}
+ * milliseconds after the first of them was added.
+ */
+public class RecordBatcher<T> {
+
+	/**
+	 * Default maximum number of records in a batch
+	 */
+	public static final int DEFAULT_MAX_SIZE = Integer.getInteger("agile.device.batch.size", 32);
+
+	/**
+	 * Default maximum time in milliseconds a record waits for its batch
+	 */
+	public static final long DEFAULT_MAX_DELAY = Long.getLong("agile.device.batch.delay", 50L);
+
+	private final Consumer<List<T>> flusher;
+
+	private final int maxSize;
+
+	private final long maxDelay;
+
+	private List<T> pending = new ArrayList<T>();
+
+	private ScheduledFuture<?> scheduledFlush;
+
+	public RecordBatcher(Consumer<List<T>> flusher) {
+		this(flusher, DEFAULT_MAX_SIZE, DEFAULT_MAX_DELAY);
+	}
+
+	public RecordBatcher(Consumer<List<T>> flusher, int maxSize, long maxDelay) {
+		this.flusher = flusher;
+		this.maxSize = maxSize;
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * Adds a record to the current batch
+	 * 
+	 * @param record
+	 */
+	public void add(T record) {
+		List<T> batch = null;
+		synchronized (this) {
+			pending.add(record);
+			if (pending.size() >= maxSize) {
+				batch = takePending();
+			} else if (scheduledFlush == null) {
+				scheduledFlush = DeviceExecutors.scheduler().schedule(this::flush, maxDelay, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (batch != null) {
+			flusher.accept(batch);
+		}
+	}
+
+	/**
+	 * Publishes the pending records, if any
+	 */
+	public void flush() {
+		List<T> batch;
+		synchronized (this) {
+			batch = takePending();
+		}
+		if (!batch.isEmpty()) {
+			flusher.accept(batch);
+		}
+	}
+
+	private List<T> takePending() {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		List<T> batch = pending;
+		pending = new ArrayList<T>(maxSize);
+		return batch;
+	}
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+/**
+ * Declares a sensor of a BLE device type: its GATT UUIDs, its unit and the
+ * layout of its raw value. Sensors without fields are decoded by the device
+ * type itself.
+ */
+public class SensorDescriptor {
+
+	/**
+	 * How the decoded values of a sensor are formatted in its records
+	 */
+	public enum ValueFormat {
+		INTEGER, FLOAT, DOUBLE;
+
+		public String format(double value) {
+			switch (this) {
+			case INTEGER:
+				return Long.toString((long) value);
+			case FLOAT:
+				return Float.toString((float) value);
+			default:
+				return Double.toString(value);
+			}
+		}
+	}
+
+	public final String name;
+
+	public final String unit;
+
+	public final SensorUuid uuid;
+
+	public final ValueFormat format;
+
+	final SensorField[] fields;
+
+	/**
+	 * Minimum length of a raw value holding all the fields
+	 */
+	final int length;
+
+	public SensorDescriptor(String name, String unit, SensorUuid uuid, ValueFormat format, SensorField... fields) {
+		this.name = name;
+		this.unit = unit;
+		this.uuid = uuid;
+		this.format = format;
+		this.fields = fields.clone();
+		int length = 0;
+		for (SensorField field : fields) {
+			length = Math.max(length, field.end());
+		}
+		this.length = length;
+	}
+}
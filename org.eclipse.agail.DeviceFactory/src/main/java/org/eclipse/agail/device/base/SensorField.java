@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Layout of a numeric field in the raw value of a sensor: the integer at
+ * {@code offset}, multiplied by {@code scale} or converted by a formula. Raw
+ * values with an unusual layout can be decoded by a function of the whole
+ * value instead.
+ */
+public final class SensorField {
+
+	/**
+	 * Integer encodings, multi-byte ones being little endian
+	 */
+	public enum Type {
+		UINT8(1, false), INT8(1, true), UINT16_LE(2, false), INT16_LE(2, true), UINT24_LE(3, false), INT24_LE(3,
+				true), UINT32_LE(4, false), INT32_LE(4, true);
+
+		final int size;
+
+		final boolean signed;
+
+		Type(int size, boolean signed) {
+			this.size = size;
+			this.signed = signed;
+		}
+	}
+
+	private final Type type;
+
+	private final int offset;
+
+	private final double scale;
+
+	private final DoubleUnaryOperator formula;
+
+	private final ToDoubleFunction<byte[]> decoder;
+
+	/**
+	 * Minimum length of the raw value, for fields decoded by a function
+	 */
+	private final int minLength;
+
+	public SensorField(Type type, int offset) {
+		this(type, offset, 1.0);
+	}
+
+	public SensorField(Type type, int offset, double scale) {
+		this(type, offset, scale, null, null, 0);
+	}
+
+	public SensorField(Type type, int offset, DoubleUnaryOperator formula) {
+		this(type, offset, 1.0, formula, null, 0);
+	}
+
+	/**
+	 * @param decoder
+	 *            decodes the field from the whole raw value, which has at
+	 *            least {@code minLength} bytes
+	 * @param minLength
+	 */
+	public SensorField(ToDoubleFunction<byte[]> decoder, int minLength) {
+		this(null, 0, 1.0, null, decoder, minLength);
+	}
+
+	private SensorField(Type type, int offset, double scale, DoubleUnaryOperator formula,
+			ToDoubleFunction<byte[]> decoder, int minLength) {
+		this.type = type;
+		this.offset = offset;
+		this.scale = scale;
+		this.formula = formula;
+		this.decoder = decoder;
+		this.minLength = minLength;
+	}
+
+	/**
+	 * @return the minimum length of the raw value containing the field
+	 */
+	public int end() {
+		return decoder != null ? minLength : offset + type.size;
+	}
+
+	/**
+	 * @param data
+	 *            raw value of at least {@link #end()} bytes
+	 * @return the value of the field
+	 */
+	public double decode(byte[] data) {
+		if (decoder != null) {
+			return decoder.applyAsDouble(data);
+		}
+		long raw = 0;
+		for (int i = type.size - 1; i >= 0; i--) {
+			raw = (raw << 8) | (data[offset + i] & 0xFF);
+		}
+		if (type.signed) {
+			int shift = 64 - 8 * type.size;
+			raw = (raw << shift) >> shift;
+		}
+		return formula != null ? formula.applyAsDouble(raw) : raw * scale;
+	}
+}
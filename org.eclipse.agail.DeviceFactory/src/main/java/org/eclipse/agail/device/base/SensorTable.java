@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sensors of a BLE device type, compiled once from their descriptors into
+ * immutable GATT profiles and a characteristic to component index, so that
+ * reads and notifications need no per call map building or scan.
+ */
+public final class SensorTable {
+
+	private final Map<String, SensorDescriptor> descriptors;
+
+	private final Map<String, Map<String, String>> readValueProfiles;
+
+	private final Map<String, Map<String, String>> configProfiles;
+
+	private final Map<String, Map<String, String>> frequencyProfiles;
+
+	/**
+	 * Value characteristic of each sensor, as a single string shared by the
+	 * sensors notified together
+	 */
+	private final Map<String, String> subscriptionKeys;
+
+	/**
+	 * Component names by value characteristic UUID, then by service UUID
+	 */
+	private final Map<String, Map<String, List<String>>> componentsByCharacteristic;
+
+	public SensorTable(SensorDescriptor... descriptors) {
+		Map<String, SensorDescriptor> byName = new LinkedHashMap<String, SensorDescriptor>();
+		Map<String, Map<String, String>> readValue = new HashMap<String, Map<String, String>>();
+		Map<String, Map<String, String>> config = new HashMap<String, Map<String, String>>();
+		Map<String, Map<String, String>> frequency = new HashMap<String, Map<String, String>>();
+		Map<String, Map<String, List<String>>> byCharacteristic = new HashMap<String, Map<String, List<String>>>();
+		Map<String, String> keys = new HashMap<String, String>();
+		Map<String, String> sharedKeys = new HashMap<String, String>();
+		for (SensorDescriptor descriptor : descriptors) {
+			SensorUuid uuid = descriptor.uuid;
+			byName.put(descriptor.name, descriptor);
+			readValue.put(descriptor.name, gattProfile(uuid.serviceUuid, uuid.charValueUuid));
+			config.put(descriptor.name, gattProfile(uuid.serviceUuid, uuid.charConfigUuid));
+			frequency.put(descriptor.name, gattProfile(uuid.serviceUuid, uuid.charFreqUuid));
+			String key = uuid.serviceUuid + "/" + uuid.charValueUuid;
+			keys.put(descriptor.name, sharedKeys.computeIfAbsent(key, k -> k));
+			Map<String, List<String>> byService = byCharacteristic.computeIfAbsent(uuid.charValueUuid,
+					c -> new HashMap<String, List<String>>());
+			List<String> names = byService.get(uuid.serviceUuid);
+			String[] extended = names == null ? new String[1] : names.toArray(new String[names.size() + 1]);
+			extended[extended.length - 1] = descriptor.name;
+			byService.put(uuid.serviceUuid, Collections.unmodifiableList(Arrays.asList(extended)));
+		}
+		this.descriptors = Collections.unmodifiableMap(byName);
+		this.readValueProfiles = Collections.unmodifiableMap(readValue);
+		this.configProfiles = Collections.unmodifiableMap(config);
+		this.frequencyProfiles = Collections.unmodifiableMap(frequency);
+		this.componentsByCharacteristic = byCharacteristic;
+		this.subscriptionKeys = Collections.unmodifiableMap(keys);
+	}
+
+	private static Map<String, String> gattProfile(String serviceUuid, String characteristicUuid) {
+		Map<String, String> profile = new HashMap<String, String>();
+		profile.put(AgileBLEDevice.GATT_SERVICE, serviceUuid);
+		profile.put(AgileBLEDevice.GATT_CHARACTERSTICS, characteristicUuid);
+		return Collections.unmodifiableMap(profile);
+	}
+
+	public boolean contains(String name) {
+		return descriptors.containsKey(name);
+	}
+
+	/**
+	 * @param name
+	 * @return the descriptor of the sensor, null if the device type has no
+	 *         such sensor
+	 */
+	public SensorDescriptor get(String name) {
+		return descriptors.get(name);
+	}
+
+	/**
+	 * @param name
+	 * @return the GATT profile of the value characteristic of the sensor, empty
+	 *         if the device type has no such sensor
+	 */
+	public Map<String, String> readValueProfile(String name) {
+		return readValueProfiles.getOrDefault(name, Collections.<String, String> emptyMap());
+	}
+
+	/**
+	 * @param name
+	 * @return the GATT profile of the configuration characteristic of the
+	 *         sensor, empty if the device type has no such sensor
+	 */
+	public Map<String, String> configProfile(String name) {
+		return configProfiles.getOrDefault(name, Collections.<String, String> emptyMap());
+	}
+
+	/**
+	 * @param name
+	 * @return the GATT profile of the period characteristic of the sensor,
+	 *         empty if the device type has no such sensor
+	 */
+	public Map<String, String> frequencyProfile(String name) {
+		return frequencyProfiles.getOrDefault(name, Collections.<String, String> emptyMap());
+	}
+
+	/**
+	 * @param name
+	 * @return the key identifying the value characteristic of the sensor, the
+	 *         same for all the sensors notified together, null if the device
+	 *         type has no such sensor
+	 */
+	public String subscriptionKey(String name) {
+		return subscriptionKeys.get(name);
+	}
+
+	/**
+	 * @param profile
+	 *            the GATT profile of a notification
+	 * @return the names of the components notified with the profile
+	 */
+	public List<String> componentNames(Map<String, String> profile) {
+		Map<String, List<String>> byService = componentsByCharacteristic
+				.get(profile.get(AgileBLEDevice.GATT_CHARACTERSTICS));
+		List<String> names = byService == null ? null : byService.get(profile.get(AgileBLEDevice.GATT_SERVICE));
+		return names != null ? names : Collections.<String> emptyList();
+	}
+
+	/**
+	 * Decodes the raw value of the sensor into {@code values}
+	 * 
+	 * @param name
+	 * @param data
+	 * @param values
+	 * @return the number of decoded values, 0 if the raw value is too short,
+	 *         -1 if the sensor is decoded by the device type
+	 */
+	public int decode(String name, byte[] data, double[] values) {
+		SensorDescriptor descriptor = descriptors.get(name);
+		if (descriptor == null || descriptor.fields.length == 0) {
+			return -1;
+		}
+		if (data == null || data.length < descriptor.length) {
+			return 0;
+		}
+		SensorField[] fields = descriptor.fields;
+		for (int i = 0; i < fields.length; i++) {
+			values[i] = fields[i].decode(data);
+		}
+		return fields.length;
+	}
+}
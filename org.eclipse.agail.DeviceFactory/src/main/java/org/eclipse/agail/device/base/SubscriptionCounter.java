@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.freedesktop.dbus.exceptions.DBusException;
+
+/**
+ * Reference counts of the subscriptions of a device.
+ *
+ * Counts are updated with atomic operations, only the transitions enabling
+ * (0 to 1) and disabling (1 to 0) notifications at protocol level are run
+ * under a lock, which is specific to the subscription key. Subscriptions to
+ * independent components therefore proceed concurrently, while concurrent
+ * subscriptions to the same component never enable it twice.
+ *
+ * The bulk operations start the transitions of their keys together, so that
+ * the protocol operations of several components are in flight at once, and
+ * wait for them without holding any lock. While the enabling transition of a
+ * key started by a bulk operation is in flight, the other subscriptions to
+ * the key join it instead of starting another one. If all the subscriptions
+ * waiting for such a transition time out and it then succeeds, the
+ * notifications it enabled are disabled again, see
+ * {@link #subscribeAll(Map, AsyncTransition, AsyncTransition, long)}.
+ */
+public class SubscriptionCounter {
+
+	/**
+	 * Maximum time in milliseconds a subscription waits for the transition of
+	 * a bulk operation it joined
+	 */
+	private static final long JOIN_TIMEOUT = Long.getLong("agile.device.subscribeall.timeout", 15000L);
+
+	/**
+	 * Action run on a transition, e.g. a protocol subscribe
+	 */
+	@FunctionalInterface
+	public interface Transition {
+		void run() throws DBusException;
+	}
+
+	/**
+	 * Action run on a transition of a bulk operation. It starts the protocol
+	 * operation of the component without waiting for its completion.
+	 */
+	@FunctionalInterface
+	public interface AsyncTransition {
+		CompletableFuture<Void> start(String componentName);
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Sum of the counts, including the subscriptions in progress
+	 */
+	private final AtomicInteger total = new AtomicInteger();
+
+	/**
+	 * Adds a subscription, running {@code onFirst} if it is the first one for
+	 * the key. The subscription is not counted if {@code onFirst} fails.
+	 * 
+	 * @param key
+	 * @param componentName
+	 *            the component subscribed to, used to resubscribe
+	 * @param onFirst
+	 * @throws DBusException
+	 */
+	public void subscribe(String key, String componentName, Transition onFirst) throws DBusException {
+		Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+		total.incrementAndGet();
+		int count = entry.count.get();
+		while (count > 0) {
+			if (entry.count.compareAndSet(count, count + 1)) {
+				return;
+			}
+			count = entry.count.get();
+		}
+		Pending joined = null;
+		boolean subscribed = false;
+		try {
+			synchronized (entry) {
+				settle(entry);
+				if (entry.pending != null) {
+					entry.pending.waiting++;
+					joined = entry.pending;
+				} else {
+					if (entry.count.get() == 0) {
+						onFirst.run();
+						entry.componentName = componentName;
+					}
+					entry.count.incrementAndGet();
+				}
+				subscribed = true;
+			}
+		} finally {
+			if (!subscribed) {
+				total.decrementAndGet();
+			}
+		}
+		if (joined != null) {
+			waitFor(joined.future, JOIN_TIMEOUT);
+			Throwable error = leave(entry, joined, 1, JOIN_TIMEOUT);
+			if (error != null) {
+				throw new DBusException(String.valueOf(error.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * Removes a subscription, running {@code onLast} if it was the last one
+	 * for the key. The subscription is removed even if {@code onLast} fails.
+	 * 
+	 * @param key
+	 * @param onLast
+	 * @return false if there was no subscription for the key
+	 * @throws DBusException
+	 */
+	public boolean unsubscribe(String key, Transition onLast) throws DBusException {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return false;
+		}
+		int count = entry.count.get();
+		while (count > 1) {
+			if (entry.count.compareAndSet(count, count - 1)) {
+				total.decrementAndGet();
+				return true;
+			}
+			count = entry.count.get();
+		}
+		synchronized (entry) {
+			settle(entry);
+			if (entry.count.get() <= 0) {
+				return false;
+			}
+			if (entry.count.decrementAndGet() > 0) {
+				// a subscriber arrived in the meantime
+				total.decrementAndGet();
+				return true;
+			}
+			try {
+				onLast.run();
+			} finally {
+				total.decrementAndGet();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Adds a subscription for each of the given components. The transitions
+	 * of the keys without subscriptions are started together and awaited at
+	 * once, without holding the locks of the keys. The subscriptions of a key
+	 * are not counted if its transition fails or does not complete within the
+	 * timeout.
+	 * 
+	 * @param components
+	 *            the components to subscribe to, grouped by key
+	 * @param onFirst
+	 * @param onOrphan
+	 *            undoes a transition that succeeds once no subscription waits
+	 *            for it anymore. If null, such a transition is kept as a
+	 *            subscription of the key, so that a later unsubscribe undoes
+	 *            it.
+	 * @param timeout
+	 *            maximum time in milliseconds to wait for the transitions
+	 * @return the error of each key whose subscriptions were not counted
+	 */
+	public Map<String, Throwable> subscribeAll(Map<String, List<String>> components, AsyncTransition onFirst,
+			AsyncTransition onOrphan, long timeout) {
+		Map<String, Pending> joined = new HashMap<String, Pending>();
+		List<Entry> started = new ArrayList<Entry>();
+		for (Map.Entry<String, List<String>> component : components.entrySet()) {
+			Entry entry = entries.computeIfAbsent(component.getKey(), k -> new Entry());
+			int subscriptions = component.getValue().size();
+			total.addAndGet(subscriptions);
+			synchronized (entry) {
+				settle(entry);
+				if (entry.pending == null && entry.count.get() > 0) {
+					entry.count.addAndGet(subscriptions);
+					continue;
+				}
+				if (entry.pending == null) {
+					String componentName = component.getValue().get(0);
+					entry.pending = new Pending(start(onFirst, componentName), componentName, onOrphan);
+					started.add(entry);
+				}
+				entry.pending.waiting += subscriptions;
+				joined.put(component.getKey(), entry.pending);
+			}
+		}
+		for (Entry entry : started) {
+			// settles the transition even if no subscription touches the key
+			// again, e.g. when all its waiters timed out
+			Pending pending;
+			synchronized (entry) {
+				pending = entry.pending;
+			}
+			if (pending != null) {
+				pending.future.whenComplete((result, error) -> {
+					synchronized (entry) {
+						settle(entry);
+					}
+				});
+			}
+		}
+		Map<String, CompletableFuture<Void>> transitions = new HashMap<String, CompletableFuture<Void>>();
+		for (Map.Entry<String, Pending> pending : joined.entrySet()) {
+			transitions.put(pending.getKey(), pending.getValue().future);
+		}
+		waitFor(allOf(transitions), timeout);
+		Map<String, Throwable> errors = new HashMap<String, Throwable>();
+		for (Map.Entry<String, Pending> pending : joined.entrySet()) {
+			String key = pending.getKey();
+			Throwable error = leave(entries.get(key), pending.getValue(), components.get(key).size(), timeout);
+			if (error != null) {
+				errors.put(key, error);
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Removes a subscription for each of the given components. The
+	 * transitions of the keys left without subscriptions are started together
+	 * and awaited at once, without holding the locks of the keys. The
+	 * subscriptions are removed even if the transitions fail.
+	 * 
+	 * @param components
+	 *            the components to unsubscribe from, grouped by key
+	 * @param onLast
+	 * @param timeout
+	 *            maximum time in milliseconds to wait for the transitions
+	 * @return the error of each key whose transition failed
+	 */
+	public Map<String, Throwable> unsubscribeAll(Map<String, List<String>> components, AsyncTransition onLast,
+			long timeout) {
+		Map<String, CompletableFuture<Void>> transitions = new HashMap<String, CompletableFuture<Void>>();
+		for (Map.Entry<String, List<String>> component : components.entrySet()) {
+			Entry entry = entries.get(component.getKey());
+			if (entry == null) {
+				continue;
+			}
+			synchronized (entry) {
+				settle(entry);
+				// concurrent unsubscribers only decrement counts greater than 1
+				int count;
+				int removed;
+				do {
+					count = entry.count.get();
+					removed = Math.min(count, component.getValue().size());
+				} while (!entry.count.compareAndSet(count, count - removed));
+				if (removed > 0 && count == removed) {
+					// queued before any later transition of the key
+					transitions.put(component.getKey(), start(onLast, component.getValue().get(0)));
+				}
+				total.addAndGet(-removed);
+			}
+		}
+		waitFor(allOf(transitions), timeout);
+		Map<String, Throwable> errors = new HashMap<String, Throwable>();
+		for (Map.Entry<String, CompletableFuture<Void>> transition : transitions.entrySet()) {
+			Throwable error = transition.getValue().isDone() ? failure(transition.getValue())
+					: new TimeoutException("Timed out after " + timeout + " ms");
+			if (error != null) {
+				errors.put(transition.getKey(), error);
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Counts the subscriptions waiting for the completed transition of the
+	 * entry, called holding the lock of the entry
+	 */
+	private void settle(Entry entry) {
+		Pending pending = entry.pending;
+		if (pending == null || !pending.future.isDone()) {
+			return;
+		}
+		entry.pending = null;
+		if (failure(pending.future) != null) {
+			total.addAndGet(-pending.waiting);
+			return;
+		}
+		if (pending.waiting > 0) {
+			entry.count.addAndGet(pending.waiting);
+			entry.componentName = pending.componentName;
+		} else if (pending.onOrphan != null) {
+			// all the waiters timed out, nobody will unsubscribe
+			start(pending.onOrphan, pending.componentName);
+		} else {
+			entry.count.incrementAndGet();
+			total.incrementAndGet();
+			entry.componentName = pending.componentName;
+		}
+	}
+
+	/**
+	 * Ends the wait of subscriptions for a transition they joined
+	 * 
+	 * @return the reason the subscriptions were not counted, null if they
+	 *         were
+	 */
+	private Throwable leave(Entry entry, Pending pending, int subscriptions, long timeout) {
+		synchronized (entry) {
+			if (!pending.future.isDone()) {
+				pending.waiting -= subscriptions;
+				total.addAndGet(-subscriptions);
+				return new TimeoutException("Timed out after " + timeout + " ms");
+			}
+			settle(entry);
+		}
+		return failure(pending.future);
+	}
+
+	private static CompletableFuture<Void> start(AsyncTransition transition, String componentName) {
+		try {
+			return transition.start(componentName);
+		} catch (RuntimeException e) {
+			CompletableFuture<Void> failed = new CompletableFuture<Void>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	private static CompletableFuture<Void> allOf(Map<String, CompletableFuture<Void>> transitions) {
+		return CompletableFuture.allOf(transitions.values().toArray(new CompletableFuture<?>[transitions.size()]));
+	}
+
+	private static void waitFor(CompletableFuture<?> future, long timeout) {
+		try {
+			future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException | ExecutionException e) {
+			// the outcome is read from the futures of the transitions
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the error of a completed transition, null if it succeeded
+	 */
+	private static Throwable failure(CompletableFuture<Void> future) {
+		if (!future.isCompletedExceptionally()) {
+			return null;
+		}
+		try {
+			future.join();
+			return null;
+		} catch (RuntimeException e) {
+			return e.getCause() != null ? e.getCause() : e;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the number of subscriptions for the key
+	 */
+	public int count(String key) {
+		Entry entry = entries.get(key);
+		return entry == null ? 0 : entry.count.get();
+	}
+
+	/**
+	 * @param key
+	 * @return true if there is at least a subscription for the key
+	 */
+	public boolean isSubscribed(String key) {
+		return count(key) > 0;
+	}
+
+	/**
+	 * @return true if there is at least a subscription, or one in progress,
+	 *         for any key
+	 */
+	public boolean isAnySubscribed() {
+		return total.get() > 0;
+	}
+
+	/**
+	 * @return a component of each key with at least a subscription
+	 */
+	public List<String> subscribed() {
+		List<String> componentNames = new ArrayList<String>();
+		for (Entry entry : entries.values()) {
+			String componentName = entry.componentName;
+			if (entry.count.get() > 0 && componentName != null) {
+				componentNames.add(componentName);
+			}
+		}
+		return componentNames;
+	}
+
+	private static class Entry {
+
+		final AtomicInteger count = new AtomicInteger();
+
+		/**
+		 * Component subscribed to on the last 0 to 1 transition
+		 */
+		volatile String componentName;
+
+		/**
+		 * Enabling transition of a bulk operation in flight, guarded by the
+		 * lock of the entry
+		 */
+		Pending pending;
+	}
+
+	/**
+	 * An enabling transition in flight and the subscriptions waiting for it
+	 */
+	private static class Pending {
+
+		final CompletableFuture<Void> future;
+
+		final String componentName;
+
+		/**
+		 * Undoes the transition if it succeeds without waiting subscriptions,
+		 * can be null
+		 */
+		final AsyncTransition onOrphan;
+
+		/**
+		 * Subscriptions counted once the transition succeeds, guarded by the
+		 * lock of the entry
+		 */
+		int waiting;
+
+		Pending(CompletableFuture<Void> future, String componentName, AsyncTransition onOrphan) {
+			this.future = future;
+			this.componentName = componentName;
+			this.onOrphan = onOrphan;
+		}
+	}
+}
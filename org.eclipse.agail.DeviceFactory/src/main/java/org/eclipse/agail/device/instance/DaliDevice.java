@@ -33,11 +33,10 @@ public class DaliDevice  extends DeviceImp implements Device {
 
     private static final String DALI_COMPONENT = "DaliData";
 
-    private DeviceStatusType deviceStatus = DeviceStatusType.DISCONNECTED;
+    private volatile DeviceStatusType deviceStatus = DeviceStatusType.DISCONNECTED;
 
     {
         profile.add(new DeviceComponent(DALI_COMPONENT, "onem2m"));
-        subscribedComponents.put(DALI_COMPONENT, 0);
     }
 
     public DaliDevice(DeviceOverview deviceOverview) throws DBusException {
@@ -88,13 +87,8 @@ public class DaliDevice  extends DeviceImp implements Device {
             if (isConnected()) {
                 if (isSensorSupported(componentName.trim())) {
                     try {
-                        if (!hasOtherActiveSubscription()) {
-                            addNewRecordSignalHandler();
-                        }
-                        if (!hasOtherActiveSubscription(componentName)) {
-                            deviceProtocol.Subscribe(address, new HashMap<String, String>());
-                        }
-                        subscribedComponents.put(componentName, subscribedComponents.get(componentName) + 1);
+                        subscribeComponent(componentName,
+                                () -> deviceProtocol.Subscribe(address, new HashMap<String, String>()));
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -110,18 +104,13 @@ public class DaliDevice  extends DeviceImp implements Device {
     }
 
     @Override
-    public synchronized void Unsubscribe(String componentName) throws DBusException {
+    public void Unsubscribe(String componentName) throws DBusException {
         if ((protocol.equals(DALI_PROTOCOL_ID)) && (deviceProtocol != null)) {
             if (isConnected()) {
                 if (isSensorSupported(componentName.trim())) {
                     try {
-                        subscribedComponents.put(componentName, subscribedComponents.get(componentName) - 1);
-                        if (!hasOtherActiveSubscription(componentName)) {
-                            deviceProtocol.Unsubscribe(address, new HashMap<String, String>());
-                        }
-                        if (!hasOtherActiveSubscription()) {
-                            removeNewRecordSignalHandler();
-                        }
+                        unsubscribeComponent(componentName,
+                                () -> deviceProtocol.Unsubscribe(address, new HashMap<String, String>()));
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -163,10 +152,8 @@ public class DaliDevice  extends DeviceImp implements Device {
     //  }
     //  
     protected boolean isConnected() {
-        if (Status().getStatus().equals(DeviceStatusType.CONNECTED.toString()) || Status().getStatus().equals(DeviceStatusType.ON.toString())) {
-            return true;
-        }
-        return false;
+        DeviceStatusType status = deviceStatus;
+        return status == DeviceStatusType.CONNECTED || status == DeviceStatusType.ON;
     }
 
     @Override
@@ -46,11 +46,10 @@ public class DummyDevice extends DeviceImp implements Device {
 
   private static final String DUMMY_COMPONENT = "DummyData";
 
-  private DeviceStatusType deviceStatus = DeviceStatusType.DISCONNECTED;
+  private volatile DeviceStatusType deviceStatus = DeviceStatusType.DISCONNECTED;
 
   {
     profile.add(new DeviceComponent(DUMMY_COMPONENT, "dum"));
-    subscribedComponents.put(DUMMY_COMPONENT, 0);
   }
 
   public DummyDevice(DeviceOverview deviceOverview) throws DBusException {
@@ -95,13 +94,8 @@ public class DummyDevice extends DeviceImp implements Device {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            if (!hasOtherActiveSubscription()) {
-              addNewRecordSignalHandler();
-            }
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Subscribe(address, new HashMap<String, String>());
-            }
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) + 1);
+            subscribeComponent(componentName,
+                () -> deviceProtocol.Subscribe(address, new HashMap<String, String>()));
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -117,18 +111,13 @@ public class DummyDevice extends DeviceImp implements Device {
     }
 
   @Override
-  public synchronized void Unsubscribe(String componentName) throws DBusException {
+  public void Unsubscribe(String componentName) throws DBusException {
     if ((protocol.equals(DUMMY_PROTOCOL_ID)) && (deviceProtocol != null)) {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) - 1);
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Unsubscribe(address, new HashMap<String, String>());
-             }
-            if (!hasOtherActiveSubscription()) {
-              removeNewRecordSignalHandler();
-            }
+            unsubscribeComponent(componentName,
+                () -> deviceProtocol.Unsubscribe(address, new HashMap<String, String>()));
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -170,10 +159,8 @@ public class DummyDevice extends DeviceImp implements Device {
 //  }
 //  
   protected boolean isConnected() {
-    if (Status().getStatus().equals(DeviceStatusType.CONNECTED.toString()) || Status().getStatus().equals(DeviceStatusType.ON.toString())) {
-      return true;
-    }
-    return false;
+    DeviceStatusType status = deviceStatus;
+    return status == DeviceStatusType.CONNECTED || status == DeviceStatusType.ON;
   }
   
   @Override
@@ -12,29 +12,25 @@
  ******************************************************************************/
 package org.eclipse.agail.device.instance;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.freedesktop.dbus.DBusSigHandler;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.eclipse.agail.Device;
-import org.eclipse.agail.Protocol;
-import org.eclipse.agail.Protocol.NewRecordSignal;
 import org.eclipse.agail.device.base.AgileBLEDevice;
+import org.eclipse.agail.device.base.SensorDescriptor;
+import org.eclipse.agail.device.base.SensorDescriptor.ValueFormat;
+import org.eclipse.agail.device.base.SensorField;
+import org.eclipse.agail.device.base.SensorField.Type;
+import org.eclipse.agail.device.base.SensorTable;
 import org.eclipse.agail.device.base.SensorUuid;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
-import org.eclipse.agail.object.RecordObject;
 import org.eclipse.agail.object.DeviceComponent;
 import org.eclipse.agail.exception.AgileNoResultException;
 
 public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
   protected Logger logger = LoggerFactory.getLogger(HexiwearDevice.class);
-  protected static final Map<String, SensorUuid> sensors = new HashMap<String, SensorUuid>();
   private static final String Acc = "Accelerometer";
   private static final String Gyro = "Gyroscope";
   private static final String Magnetometer = "Magnetometer";
@@ -48,21 +44,32 @@ public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
   private static final String Steps = "Steps";
   private static final String Calories = "Calories";
 
+  protected static final SensorTable sensors = new SensorTable(
+			new SensorDescriptor(Acc, "", new SensorUuid("00002000-0000-1000-8000-00805f9b34fb", "00002001-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT16_LE, 0),
+					new SensorField(Type.INT16_LE, 2), new SensorField(Type.INT16_LE, 4)),
+			new SensorDescriptor(Gyro, "", new SensorUuid("00002000-0000-1000-8000-00805f9b34fb", "00002002-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT16_LE, 0),
+					new SensorField(Type.INT16_LE, 2), new SensorField(Type.INT16_LE, 4)),
+			new SensorDescriptor(Magnetometer, "", new SensorUuid("00002000-0000-1000-8000-00805f9b34fb", "00002003-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT16_LE, 0),
+					new SensorField(Type.INT16_LE, 2), new SensorField(Type.INT16_LE, 4)),
+			new SensorDescriptor(AmbientLight, "", new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002011-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT8, 0)),
+			new SensorDescriptor(Temperature, "", new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002012-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT16_LE, 0, 0.01)),
+			new SensorDescriptor(Humidity, "", new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002013-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT16_LE, 0, 0.01)),
+			new SensorDescriptor(Pressure, "", new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002014-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT16_LE, 0, 0.01)),
+			new SensorDescriptor(Heartrate, "", new SensorUuid("00002020-0000-1000-8000-00805f9b34fb", "00002021-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT8, 0)),
+			new SensorDescriptor(Steps, "", new SensorUuid("00002020-0000-1000-8000-00805f9b34fb", "00002022-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT8, 0)),
+			new SensorDescriptor(Calories, "", new SensorUuid("00002020-0000-1000-8000-00805f9b34fb", "00002023-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT8, 0)));
 
-	{
-		subscribedComponents.put(Acc, 0);
-		subscribedComponents.put(Gyro, 0);
-		subscribedComponents.put(Magnetometer, 0);
 
-		subscribedComponents.put(AmbientLight, 0);
-		subscribedComponents.put(Temperature, 0);
-		subscribedComponents.put(Humidity, 0);
-		subscribedComponents.put(Pressure, 0);
-
-		subscribedComponents.put(Heartrate, 0);
-		subscribedComponents.put(Steps, 0);
-		subscribedComponents.put(Calories, 0);
-	}
 
  	{
 		profile.add(new DeviceComponent(Acc, ""));
@@ -77,22 +84,14 @@ public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
 		profile.add(new DeviceComponent(Heartrate, ""));
 		profile.add(new DeviceComponent(Steps, ""));
 		profile.add(new DeviceComponent(Calories, ""));
-	}
- 
 
- 	static {
-		sensors.put(Acc, new SensorUuid("00002000-0000-1000-8000-00805f9b34fb", "00002001-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Gyro, new SensorUuid("00002000-0000-1000-8000-00805f9b34fb", "00002002-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Magnetometer, new SensorUuid("00002000-0000-1000-8000-00805f9b34fb", "00002003-0000-1000-8000-00805f9b34fb", "", ""));
+		sensorTable = sensors;
 
-		sensors.put(AmbientLight, new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002011-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Temperature, new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002012-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Humidity, new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002013-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Pressure, new SensorUuid("00002010-0000-1000-8000-00805f9b34fb", "00002014-0000-1000-8000-00805f9b34fb", "", ""));
+		batchedComponents.add(Acc);
+		batchedComponents.add(Gyro);
+		batchedComponents.add(Magnetometer);
 
-		sensors.put(Heartrate, new SensorUuid("00002020-0000-1000-8000-00805f9b34fb", "00002021-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Steps, new SensorUuid("00002020-0000-1000-8000-00805f9b34fb", "00002022-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Calories, new SensorUuid("00002020-0000-1000-8000-00805f9b34fb", "00002023-0000-1000-8000-00805f9b34fb", "", ""));
+		skipZeroReadings = true;
 	}
 
 	public static boolean Matches(DeviceOverview d) {
@@ -113,13 +112,11 @@ public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
 	@Override
 	public void Connect() throws DBusException {
 		super.Connect();
-		for (String componentName : subscribedComponents.keySet()) {
+		for (String componentName : subscribedComponents.subscribed()) {
 			logger.info("Hexiwear Connect: " + componentName);
 			//DeviceRead(componentName);
-			if (subscribedComponents.get(componentName) > 0) {
-				logger.info("Resubscribing to {}", componentName);
-				deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
-			}
+			logger.info("Resubscribing to {}", componentName);
+			awaitGatt(gattSubscribe(getReadValueProfile(componentName)));
 		}
 	}
 
@@ -131,7 +128,7 @@ public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            byte[] result = deviceProtocol.Read(address, getReadValueProfile(componentName));
+            byte[] result = awaitGatt(gattRead(getReadValueProfile(componentName)));
             return formatReading(componentName, result);
           } catch (DBusException e) {
             e.printStackTrace();
@@ -150,17 +147,14 @@ public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
 
 	
  @Override
-  public synchronized void Subscribe(String componentName) {
+  public void Subscribe(String componentName) {
     if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
-              addNewRecordSignalHandler();
-            }
+            subscribeComponent(componentName,
+                () -> awaitGatt(gattSubscribe(getReadValueProfile(componentName))));
 	    logger.info("Hexiwear Subscribe");
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) + 1);
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -176,16 +170,13 @@ public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
   }
 
  @Override
-  public synchronized void Unsubscribe(String componentName) throws DBusException {
+  public void Unsubscribe(String componentName) throws DBusException {
     if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) - 1);
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Unsubscribe(address, getReadValueProfile(componentName));
-              removeNewRecordSignalHandler();
-            }
+            unsubscribeComponent(componentName,
+                () -> awaitGatt(gattUnsubscribe(getReadValueProfile(componentName))));
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -218,163 +209,4 @@ public abstract class HexiwearDevice extends AgileBLEDevice implements Device {
 
 	// =======================Utility methods===========================
 
-	private Map<String, String> getReadValueProfile(String sensorName) {
-		Map<String, String> profile = new HashMap<String, String>();
-		SensorUuid s = sensors.get(sensorName);
-		if (s != null) {
-			profile.put(GATT_SERVICE, s.serviceUuid);
-			profile.put(GATT_CHARACTERSTICS, s.charValueUuid);
-			logger.info("Hexiwear Gatt Service: "+s.serviceUuid);
-			logger.info("Hexiwear Gatt Characteristic: "+s.charValueUuid);
-		}
-		return profile;
-	}
-
-	@Override
-	protected boolean isSensorSupported(String sensorName) {
-		return sensors.containsKey(sensorName);
-	}
-
-
-
-	/**
-	 * Checks if there is another active subscription on the given component of
-	 * the device
-	 * 
-	 * @param componentName
-	 * @return
-	 */
-	@Override
-	protected boolean hasOtherActiveSubscription(String componentName) {
-		for (String component : subscribedComponents.keySet()) {
-			if (subscribedComponents.get(component) > 0) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	@Override
-	protected String formatReading(String componentName, byte[] readData) {
-			int resultX = 0;
-			int resultY = 0;
-			int resultZ = 0;
-			String value = "";
-		switch (componentName) {
-   		   case Acc:
-			resultX =   (readData[1] << 8) | readData[0];
-			resultY =   (readData[3] << 8) | readData[2];
-			resultZ =   (readData[5] << 8) | readData[4];
-			value = "["+Integer.toString(resultX)+","+Integer.toString(resultY)+","+Integer.toString(resultZ)+"]";
-			return value;
-		   case Gyro:
-			resultX =   (readData[1] << 8) | readData[0];
-			resultY =   (readData[3] << 8) | readData[2];
-			resultZ =   (readData[5] << 8) | readData[4];
-			value = "["+Integer.toString(resultX)+","+Integer.toString(resultY)+","+Integer.toString(resultZ)+"]";
-			return value;
-		   case Magnetometer:
-			resultX =  (readData[1] << 8) | readData[0];
-			resultY =  (readData[3] << 8) | readData[2];
-			resultZ =  (readData[5] << 8) | readData[4];
-			value = "["+Integer.toString(resultX)+","+Integer.toString(resultY)+","+Integer.toString(resultZ)+"]";
-			return value;
-		   case AmbientLight:
-			value = Integer.toString(readData[0]);
-			return value;
-		   case Temperature:
-		   case Humidity:
-		   case Pressure:	
-			value = Integer.toString((readData[1] << 8 | readData[0]) /100);
-			return value;
-		   case Heartrate:
-		   case Steps: 
-		   case Calories:
-			value = Integer.toString(readData[0]);
-			return value;	
-		}
-		return "0";
-	}
-
-	/**
-
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected void addNewRecordSignalHandler() {
-		logger.info("Hexiwear addNewRecordSignalHandler");	
-		try {
-			if (newRecordSigHanlder == null && connection != null) {
- 				newRecordSigHanlder = new DBusSigHandler<Protocol.NewRecordSignal>() {
-					@Override
-					public void handle(NewRecordSignal sig) {
-						if (sig.address.equals(address)) {
- 							for(String componentName : getComponentNames(sig.profile)){
- 								String readVal = formatReading(componentName, sig.record);
- 								if (Float.parseFloat(readVal) != 0.0) {
- 									RecordObject recObj = new RecordObject(deviceID, componentName,
- 											formatReading(componentName, sig.record), getMeasurementUnit(componentName), "",
- 											System.currentTimeMillis());
- 									data = recObj;
- 									logger.info("Device notification component {} value {}", componentName, recObj.value);
- 									lastReadStore.put(componentName, recObj);
- 									try {
- 										Device.NewSubscribeValueSignal newRecordSignal = new Device.NewSubscribeValueSignal(
- 												AGILE_NEW_RECORD_SUBSCRIBE_SIGNAL_PATH, recObj);
- 										connection.sendSignal(newRecordSignal);
- 									} catch (DBusException e) {
- 										e.printStackTrace();
- 									}
- 								}
- 							}
-						}
-					}
-				};
-				connection.addSigHandler(Protocol.NewRecordSignal.class, newRecordSigHanlder);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-	}
-	
-	/**
-	 * Given the profile of the component returns the list of component names
-	 * 
-	 * @param uuid
-	 * @return
-	 */
- 	protected List<String> getComponentNames(Map<String, String> profile) {
-		List<String> ret = new ArrayList<String>();
-		String serviceUUID = profile.get(GATT_SERVICE);
-		String charValueUuid = profile.get(GATT_CHARACTERSTICS);
-		for (Entry<String, SensorUuid> su : sensors.entrySet()) {
-			if (su.getValue().serviceUuid.equals(serviceUUID) && su.getValue().charValueUuid.equals(charValueUuid)) {
-				ret.add(su.getKey());
-			}
-		}
-		return ret;
-	}
- 	
- 	@Override
-	protected String getMeasurementUnit(String sensor) {
- 		return "";
- 	}
-
-  /**
-   * Given the profile of the component returns the name of the sensor
-   * 
-   * @param uuid
-   * @return
-   */
-  @Override
-  protected String getComponentName(Map<String, String> profile) {
-    String serviceUUID = profile.get(GATT_SERVICE);
-    String charValueUuid = profile.get(GATT_CHARACTERSTICS);
-    for (Entry<String, SensorUuid> su : sensors.entrySet()) {
-      if (su.getValue().serviceUuid.equals(serviceUUID) && su.getValue().charValueUuid.equals(charValueUuid)) {
-        return su.getKey();
-      }
-    }
-    return null;
-  }
 }
@@ -12,54 +12,45 @@
  ******************************************************************************/
 package org.eclipse.agail.device.instance;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.freedesktop.dbus.DBusSigHandler;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.eclipse.agail.Device;
-import org.eclipse.agail.Protocol;
-import org.eclipse.agail.Protocol.NewRecordSignal;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
-import org.eclipse.agail.object.RecordObject;
 import org.eclipse.agail.object.DeviceComponent;
 import org.eclipse.agail.exception.AgileNoResultException;
 import org.eclipse.agail.device.base.AgileBLEDevice;
+import org.eclipse.agail.device.base.SensorDescriptor;
+import org.eclipse.agail.device.base.SensorDescriptor.ValueFormat;
+import org.eclipse.agail.device.base.SensorTable;
 import org.eclipse.agail.device.base.SensorUuid;
 
 public abstract class MedicalDevice extends AgileBLEDevice implements Device {
   protected Logger logger = LoggerFactory.getLogger(MedicalDevice.class);
-  protected static final Map<String, SensorUuid> sensors = new HashMap<String, SensorUuid>();
 	private static final String SpO2 = "SpO2";
 	private static final String PULSE = "PULSE";
 	private static final String PI = "PI";
 
-	{
-		subscribedComponents.put(SpO2, 0);
-		subscribedComponents.put(PULSE, 0);
-		subscribedComponents.put(PI, 0);
-	}
 
  	{
 		profile.add(new DeviceComponent(SpO2, ""));
 		profile.add(new DeviceComponent(PULSE, ""));
 		profile.add(new DeviceComponent(PI, ""));
 
+		sensorTable = sensors;
+		skipZeroReadings = true;
 	}
  
 
- 	static {
-		sensors.put(PI, new SensorUuid("cdeacb80-5235-4c07-8846-93a37ee6b86d", "cdeacb81-5235-4c07-8846-93a37ee6b86d", "", ""));
-		sensors.put(PULSE,
-				new SensorUuid("cdeacb80-5235-4c07-8846-93a37ee6b86d", "cdeacb81-5235-4c07-8846-93a37ee6b86d", "", ""));
-		sensors.put(SpO2,
-				new SensorUuid("cdeacb80-5235-4c07-8846-93a37ee6b86d", "cdeacb81-5235-4c07-8846-93a37ee6b86d","", ""));
-	}
+ 	protected static final SensorTable sensors = new SensorTable(
+			new SensorDescriptor(PI, "", new SensorUuid("cdeacb80-5235-4c07-8846-93a37ee6b86d", "cdeacb81-5235-4c07-8846-93a37ee6b86d", "", ""),
+					ValueFormat.FLOAT),
+			new SensorDescriptor(PULSE, "", new SensorUuid("cdeacb80-5235-4c07-8846-93a37ee6b86d", "cdeacb81-5235-4c07-8846-93a37ee6b86d", "", ""),
+					ValueFormat.FLOAT),
+			new SensorDescriptor(SpO2, "", new SensorUuid("cdeacb80-5235-4c07-8846-93a37ee6b86d", "cdeacb81-5235-4c07-8846-93a37ee6b86d", "", ""),
+					ValueFormat.FLOAT));
 
 	public static boolean Matches(DeviceOverview d) {
 		return d.name.contains("Medical") || d.name.contains("MyOximeter");
@@ -79,11 +70,9 @@ public abstract class MedicalDevice extends AgileBLEDevice implements Device {
 	@Override
 	public void Connect() throws DBusException {
 		super.Connect();
-		for (String componentName : subscribedComponents.keySet()) {
-			if (subscribedComponents.get(componentName) > 0) {
-				logger.info("Resubscribing to {}", componentName);
-				deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
-			}
+		for (String componentName : subscribedComponents.subscribed()) {
+			logger.info("Resubscribing to {}", componentName);
+			awaitGatt(gattSubscribe(getReadValueProfile(componentName)));
 		}
 	}
 
@@ -94,9 +83,9 @@ public abstract class MedicalDevice extends AgileBLEDevice implements Device {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            byte[] result = deviceProtocol.NotificationRead(address, getReadValueProfile(componentName));
+            byte[] result = awaitGatt(gattNotificationRead(getReadValueProfile(componentName)));
             while (result.length != 4) {
-              result = deviceProtocol.NotificationRead(address, getReadValueProfile(componentName));
+              result = awaitGatt(gattNotificationRead(getReadValueProfile(componentName)));
             }
             return formatReading(componentName, result);
           } catch (DBusException e) {
@@ -115,16 +104,13 @@ public abstract class MedicalDevice extends AgileBLEDevice implements Device {
   }
 	
  @Override
-  public synchronized void Subscribe(String componentName) {
+  public void Subscribe(String componentName) {
     if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
-              addNewRecordSignalHandler();
-            }
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) + 1);
+            subscribeComponent(componentName,
+                () -> awaitGatt(gattSubscribe(getReadValueProfile(componentName))));
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -140,16 +126,13 @@ public abstract class MedicalDevice extends AgileBLEDevice implements Device {
   }
 
  @Override
-  public synchronized void Unsubscribe(String componentName) throws DBusException {
+  public void Unsubscribe(String componentName) throws DBusException {
     if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) - 1);
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Unsubscribe(address, getReadValueProfile(componentName));
-              removeNewRecordSignalHandler();
-            }
+            unsubscribeComponent(componentName,
+                () -> awaitGatt(gattUnsubscribe(getReadValueProfile(componentName))));
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -181,44 +164,12 @@ public abstract class MedicalDevice extends AgileBLEDevice implements Device {
 
 	// =======================Utility methods===========================
 
-	private Map<String, String> getReadValueProfile(String sensorName) {
-		Map<String, String> profile = new HashMap<String, String>();
-		SensorUuid s = sensors.get(sensorName);
-		if (s != null) {
-			profile.put(GATT_SERVICE, s.serviceUuid);
-			profile.put(GATT_CHARACTERSTICS, s.charValueUuid);
-		}
-		return profile;
-	}
-
-	@Override
-	protected boolean isSensorSupported(String sensorName) {
-		return sensors.containsKey(sensorName);
-	}
-        
         
 
 
 
-	/**
-	 * Checks if there is another active subscription on the given component of
-	 * the device
-	 * 
-	 * @param componentName
-	 * @return
-	 */
 	@Override
-	protected boolean hasOtherActiveSubscription(String componentName) {
-		for (String component : subscribedComponents.keySet()) {
-			if (subscribedComponents.get(component) > 0) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	@Override
-	protected String formatReading(String componentName, byte[] readData) {
+	protected int decodeReading(String componentName, byte[] readData, double[] values) {
 		float result = 0;
 		if ((readData.length == 11) && ((readData[0] & 0xff) == 0x88)) {
 			switch (componentName) {
@@ -246,90 +197,8 @@ public abstract class MedicalDevice extends AgileBLEDevice implements Device {
 				break;
 			}
 		}
-		return Float.toString(result);
-	}
-
-	/**
-	 * The read operation on this device returns 4 zero's after a single
-	 * non-zero read value. Therefore, in order to avoid signaling of the zero
-	 * values (w/h are not the actual read) we override this method and put this
-	 * condition to check the value
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected void addNewRecordSignalHandler() {
-		try {
-			if (newRecordSigHanlder == null && connection != null) {
- 				newRecordSigHanlder = new DBusSigHandler<Protocol.NewRecordSignal>() {
-					@Override
-					public void handle(NewRecordSignal sig) {
-						if (sig.address.equals(address)) {
- 							for(String componentName : getComponentNames(sig.profile)){
- 								String readVal = formatReading(componentName, sig.record);
- 								if (Float.parseFloat(readVal) != 0.0) {
- 									RecordObject recObj = new RecordObject(deviceID, componentName,
- 											formatReading(componentName, sig.record), getMeasurementUnit(componentName), "",
- 											System.currentTimeMillis());
- 									data = recObj;
- 									logger.info("Device notification component {} value {}", componentName, recObj.value);
- 									lastReadStore.put(componentName, recObj);
- 									try {
- 										Device.NewSubscribeValueSignal newRecordSignal = new Device.NewSubscribeValueSignal(
- 												AGILE_NEW_RECORD_SUBSCRIBE_SIGNAL_PATH, recObj);
- 										connection.sendSignal(newRecordSignal);
- 									} catch (DBusException e) {
- 										e.printStackTrace();
- 									}
- 								}
- 							}
-						}
-					}
-				};
-				connection.addSigHandler(Protocol.NewRecordSignal.class, newRecordSigHanlder);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-	}
-	
-	/**
-	 * Given the profile of the component returns the list of component names
-	 * 
-	 * @param uuid
-	 * @return
-	 */
- 	protected List<String> getComponentNames(Map<String, String> profile) {
-		List<String> ret = new ArrayList<String>();
-		String serviceUUID = profile.get(GATT_SERVICE);
-		String charValueUuid = profile.get(GATT_CHARACTERSTICS);
-		for (Entry<String, SensorUuid> su : sensors.entrySet()) {
-			if (su.getValue().serviceUuid.equals(serviceUUID) && su.getValue().charValueUuid.equals(charValueUuid)) {
-				ret.add(su.getKey());
-			}
-		}
-		return ret;
+		values[0] = result;
+		return 1;
 	}
- 	
- 	@Override
-	protected String getMeasurementUnit(String sensor) {
- 		return "Percentile(%)";
- 	}
 
-  /**
-   * Given the profile of the component returns the name of the sensor
-   * 
-   * @param uuid
-   * @return
-   */
-  @Override
-  protected String getComponentName(Map<String, String> profile) {
-    String serviceUUID = profile.get(GATT_SERVICE);
-    String charValueUuid = profile.get(GATT_CHARACTERSTICS);
-    for (Entry<String, SensorUuid> su : sensors.entrySet()) {
-      if (su.getValue().serviceUuid.equals(serviceUUID) && su.getValue().charValueUuid.equals(charValueUuid)) {
-        return su.getKey();
-      }
-    }
-    return null;
-  }
 }
@@ -12,29 +12,26 @@
  ******************************************************************************/
 package org.eclipse.agail.device.instance;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.freedesktop.dbus.DBusSigHandler;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.eclipse.agail.Device;
-import org.eclipse.agail.Protocol;
-import org.eclipse.agail.Protocol.NewRecordSignal;
 import org.eclipse.agail.device.base.AgileBLEDevice;
+import org.eclipse.agail.device.base.ReadCachePolicy;
+import org.eclipse.agail.device.base.SensorDescriptor;
+import org.eclipse.agail.device.base.SensorDescriptor.ValueFormat;
+import org.eclipse.agail.device.base.SensorField;
+import org.eclipse.agail.device.base.SensorField.Type;
+import org.eclipse.agail.device.base.SensorTable;
 import org.eclipse.agail.device.base.SensorUuid;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
-import org.eclipse.agail.object.RecordObject;
 import org.eclipse.agail.object.DeviceComponent;
 import org.eclipse.agail.exception.AgileNoResultException;
 
 public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device {
   protected Logger logger = LoggerFactory.getLogger(ModosmartRoomSensorDevice.class);
-  protected static final Map<String, SensorUuid> sensors = new HashMap<String, SensorUuid>();
   private static final String Presence = "Presence";
   private static final String Temperature = "Temperature";
   private static final String Humidity = "Humidity";
@@ -44,15 +41,6 @@ public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device
   private static final String FirmwareRevision = "Firmware Revision";
 
 
-	{
-		subscribedComponents.put(Presence, 0);
-		subscribedComponents.put(Temperature, 0);
-		subscribedComponents.put(Humidity, 0);
-
-		subscribedComponents.put(BatteryLevel, 0);
-
-		subscribedComponents.put(FirmwareRevision, 0);
-	}
 
  	{
 		profile.add(new DeviceComponent(Presence, ""));
@@ -60,20 +48,27 @@ public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device
 		profile.add(new DeviceComponent(Humidity, ""));
 
 		profile.add(new DeviceComponent(BatteryLevel, ""));
+		readCachePolicies.put(BatteryLevel, new ReadCachePolicy(600000, 3600000));
 
 		profile.add(new DeviceComponent(FirmwareRevision, ""));
-	}
+		readCachePolicies.put(FirmwareRevision, new ReadCachePolicy(3600000, 86400000));
 
+		sensorTable = sensors;
+		skipZeroReadings = true;
+	}
 
- 	static {
-		sensors.put(Presence, new SensorUuid("0000a000-0000-1000-8000-00805f9b34fb", "0000a001-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Temperature, new SensorUuid("0000a000-0000-1000-8000-00805f9b34fb", "00002a6e-0000-1000-8000-00805f9b34fb", "", ""));
-		sensors.put(Humidity, new SensorUuid("0000a000-0000-1000-8000-00805f9b34fb", "00002a6f-0000-1000-8000-00805f9b34fb", "", ""));
-
-		sensors.put(BatteryLevel, new SensorUuid("0000180f-0000-1000-8000-00805f9b34fb", "00002a19-0000-1000-8000-00805f9b34fb", "", ""));
 
-		sensors.put(FirmwareRevision, new SensorUuid("0000180a-0000-1000-8000-00805f9b34fb", "00002a26-0000-1000-8000-00805f9b34fb", "", ""));
-	}
+ 	protected static final SensorTable sensors = new SensorTable(
+			new SensorDescriptor(Presence, "", new SensorUuid("0000a000-0000-1000-8000-00805f9b34fb", "0000a001-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.INT16_LE, 0)),
+			new SensorDescriptor(Temperature, "", new SensorUuid("0000a000-0000-1000-8000-00805f9b34fb", "00002a6e-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.DOUBLE, new SensorField(Type.INT16_LE, 0, 0.01)),
+			new SensorDescriptor(Humidity, "", new SensorUuid("0000a000-0000-1000-8000-00805f9b34fb", "00002a6f-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.DOUBLE, new SensorField(Type.INT16_LE, 0, 0.01)),
+			new SensorDescriptor(BatteryLevel, "", new SensorUuid("0000180f-0000-1000-8000-00805f9b34fb", "00002a19-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.INTEGER, new SensorField(Type.UINT8, 0)),
+			new SensorDescriptor(FirmwareRevision, "", new SensorUuid("0000180a-0000-1000-8000-00805f9b34fb", "00002a26-0000-1000-8000-00805f9b34fb", "", ""),
+					ValueFormat.DOUBLE));
 
 	public static boolean Matches(DeviceOverview d) {
 		return d.name.contains("SM006");
@@ -93,13 +88,11 @@ public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device
 	@Override
 	public void Connect() throws DBusException {
 		super.Connect();
-		for (String componentName : subscribedComponents.keySet()) {
+		for (String componentName : subscribedComponents.subscribed()) {
 			logger.info("MODOSMART_ROOM_SENSOR Connect: " + componentName);
 			//DeviceRead(componentName);
-			if (subscribedComponents.get(componentName) > 0) {
-				logger.info("Resubscribing to {}", componentName);
-				deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
-			}
+			logger.info("Resubscribing to {}", componentName);
+			awaitGatt(gattSubscribe(getReadValueProfile(componentName)));
 		}
 	}
 
@@ -111,7 +104,7 @@ public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            byte[] result = deviceProtocol.Read(address, getReadValueProfile(componentName));
+            byte[] result = awaitGatt(gattRead(getReadValueProfile(componentName)));
             return formatReading(componentName, result);
           } catch (DBusException e) {
             e.printStackTrace();
@@ -130,17 +123,14 @@ public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device
 
 
  @Override
-  public synchronized void Subscribe(String componentName) {
+  public void Subscribe(String componentName) {
     if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
-              addNewRecordSignalHandler();
-            }
-	    logger.info("MODOSMART_ROOM_SENSOR Subscribe");
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) + 1);
+            subscribeComponent(componentName,
+                () -> awaitGatt(gattSubscribe(getReadValueProfile(componentName))));
+            logger.info("MODOSMART_ROOM_SENSOR Subscribe");
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -156,16 +146,13 @@ public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device
   }
 
  @Override
-  public synchronized void Unsubscribe(String componentName) throws DBusException {
+  public void Unsubscribe(String componentName) throws DBusException {
     if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
       if (isConnected()) {
         if (isSensorSupported(componentName.trim())) {
           try {
-            subscribedComponents.put(componentName, subscribedComponents.get(componentName) - 1);
-            if (!hasOtherActiveSubscription(componentName)) {
-              deviceProtocol.Unsubscribe(address, getReadValueProfile(componentName));
-              removeNewRecordSignalHandler();
-            }
+            unsubscribeComponent(componentName,
+                () -> awaitGatt(gattUnsubscribe(getReadValueProfile(componentName))));
           } catch (Exception e) {
             e.printStackTrace();
           }
@@ -198,152 +185,12 @@ public class ModosmartRoomSensorDevice extends AgileBLEDevice implements Device
 
 	// =======================Utility methods===========================
 
-	private Map<String, String> getReadValueProfile(String sensorName) {
-		Map<String, String> profile = new HashMap<String, String>();
-		SensorUuid s = sensors.get(sensorName);
-		if (s != null) {
-			profile.put(GATT_SERVICE, s.serviceUuid);
-			profile.put(GATT_CHARACTERSTICS, s.charValueUuid);
-			logger.info("MODOSMART_ROOM_SENSOR Gatt Service: "+s.serviceUuid);
-			logger.info("MODOSMART_ROOM_SENSOR Gatt Characteristic: "+s.charValueUuid);
-		}
-		return profile;
-	}
-
-	@Override
-	protected boolean isSensorSupported(String sensorName) {
-		return sensors.containsKey(sensorName);
-	}
-
-
-
-	/**
-	 * Checks if there is another active subscription on the given component of
-	 * the device
-	 *
-	 * @param componentName
-	 * @return
-	 */
-	@Override
-	protected boolean hasOtherActiveSubscription(String componentName) {
-		for (String component : subscribedComponents.keySet()) {
-			if (subscribedComponents.get(component) > 0) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	@Override
 	protected String formatReading(String componentName, byte[] readData) {
-    short int_result;
-    double result;
-    String value;
-		switch (componentName) {
-         case Presence:
-            int_result = (short)(((readData[1] & 0xFF) << 8) | (readData[0] & 0xFF));
-            value = Integer.toString(int_result);
-            return value;
-   		   case Temperature:
-            int_result = (short)(((readData[1] & 0xFF) << 8) | (readData[0] & 0xFF));
-            result = int_result * 0.01;
-            value = String.valueOf(result);
-            return value;
-		     case Humidity:
-            int_result = (short)(((readData[1] & 0xFF) << 8) | (readData[0] & 0xFF));
-            result = int_result * 0.01;
-            value = String.valueOf(result);
-            return value;
-		     case BatteryLevel:
-            int_result = (short)((readData[0] & 0xFF));
-            value = Integer.toString(int_result);
-            return value;
-		     case FirmwareRevision:
-            value = new String(readData);
-            return value;
-		}
-		return "0";
-	}
-
-	/**
-
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected void addNewRecordSignalHandler() {
-		logger.info("MODOSMART_ROOM_SENSOR addNewRecordSignalHandler");
-		try {
-			if (newRecordSigHanlder == null && connection != null) {
- 				newRecordSigHanlder = new DBusSigHandler<Protocol.NewRecordSignal>() {
-					@Override
-					public void handle(NewRecordSignal sig) {
-						if (sig.address.equals(address)) {
- 							for(String componentName : getComponentNames(sig.profile)){
- 								String readVal = formatReading(componentName, sig.record);
- 								if (Float.parseFloat(readVal) != 0.0) {
- 									RecordObject recObj = new RecordObject(deviceID, componentName,
- 											formatReading(componentName, sig.record), getMeasurementUnit(componentName), "",
- 											System.currentTimeMillis());
- 									data = recObj;
- 									logger.info("Device notification component {} value {}", componentName, recObj.value);
- 									lastReadStore.put(componentName, recObj);
- 									try {
- 										Device.NewSubscribeValueSignal newRecordSignal = new Device.NewSubscribeValueSignal(
- 												AGILE_NEW_RECORD_SUBSCRIBE_SIGNAL_PATH, recObj);
- 										connection.sendSignal(newRecordSignal);
- 									} catch (DBusException e) {
- 										e.printStackTrace();
- 									}
- 								}
- 							}
-						}
-					}
-				};
-				connection.addSigHandler(Protocol.NewRecordSignal.class, newRecordSigHanlder);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		if (FirmwareRevision.equals(componentName)) {
+			return new String(readData);
 		}
+		return super.formatReading(componentName, readData);
 	}
 
-	/**
-	 * Given the profile of the component returns the list of component names
-	 *
-	 * @param uuid
-	 * @return
-	 */
- 	protected List<String> getComponentNames(Map<String, String> profile) {
-		List<String> ret = new ArrayList<String>();
-		String serviceUUID = profile.get(GATT_SERVICE);
-		String charValueUuid = profile.get(GATT_CHARACTERSTICS);
-		for (Entry<String, SensorUuid> su : sensors.entrySet()) {
-			if (su.getValue().serviceUuid.equals(serviceUUID) && su.getValue().charValueUuid.equals(charValueUuid)) {
-				ret.add(su.getKey());
-			}
-		}
-		return ret;
-	}
-
- 	@Override
-	protected String getMeasurementUnit(String sensor) {
- 		return "";
- 	}
-
-  /**
-   * Given the profile of the component returns the name of the sensor
-   *
-   * @param uuid
-   * @return
-   */
-  @Override
-  protected String getComponentName(Map<String, String> profile) {
-    String serviceUUID = profile.get(GATT_SERVICE);
-    String charValueUuid = profile.get(GATT_CHARACTERSTICS);
-    for (Entry<String, SensorUuid> su : sensors.entrySet()) {
-      if (su.getValue().serviceUuid.equals(serviceUUID) && su.getValue().charValueUuid.equals(charValueUuid)) {
-        return su.getKey();
-      }
-    }
-    return null;
-  }
 }
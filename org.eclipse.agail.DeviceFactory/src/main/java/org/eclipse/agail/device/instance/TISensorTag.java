@@ -17,22 +17,36 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.agail.Device;
 import org.eclipse.agail.device.base.AgileBLEDevice;
+import org.eclipse.agail.device.base.DeviceExecutors;
+import org.eclipse.agail.device.base.ReadCachePolicy;
+import org.eclipse.agail.device.base.SensorDescriptor;
+import org.eclipse.agail.device.base.SensorDescriptor.ValueFormat;
+import org.eclipse.agail.device.base.SensorField;
+import org.eclipse.agail.device.base.SensorField.Type;
+import org.eclipse.agail.device.base.SensorTable;
 import org.eclipse.agail.device.base.SensorUuid;
+import org.eclipse.agail.device.base.SubscriptionCounter;
 import org.eclipse.agail.exception.AgileNoResultException;
 import org.eclipse.agail.object.DeviceComponent;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
+import org.eclipse.agail.object.RecordObject;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class TISensorTag extends AgileBLEDevice implements Device {
 	protected Logger logger = LoggerFactory.getLogger(TISensorTag.class);
-	protected static final Map<String, SensorUuid> sensors = new HashMap<String, SensorUuid>();
 	protected static final Map<String, byte[]> commands = new HashMap<String, byte[]>();
 	private static final byte[] TURN_ON_SENSOR = { 0X01 };
 	private static final byte[] TURN_OFF_SENSOR = { 0X00 };
@@ -47,65 +61,122 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 	private static final byte[] TURN_ON_LED1 = { 0x01 };
 	private static final byte[] TURN_ON_LED2 = { 0x02 };
 	private static final byte[] TURN_ON_BUZZER = { 0x04 };
+	/**
+	 * The default read data period (frequency) of most of sensor tag sensors is
+	 * 1000ms therefore the first data will be available to read after 1000ms
+	 * from turning the sensor on
+	 */
+	private static final long SENSOR_WARM_UP_TIME = 1010;
 
-	{
-		subscribedComponents.put(TEMPERATURE, 0);
-		// subscribedComponents.put(ACCELEROMETER, 0);
-		subscribedComponents.put(HUMIDITY, 0);
-		subscribedComponents.put(PRESSURE, 0);
-		// subscribedComponents.put(GYROSCOPE, 0);
-		subscribedComponents.put(OPTICAL, 0);
-	}
+	/**
+	 * Time in milliseconds a sensor turned on for a read stays on after the
+	 * last read, so that the following reads skip the warm up. 0 turns the
+	 * sensor off right after each read.
+	 */
+	private static final long SENSOR_IDLE_TIME = Long.getLong("agile.tisensortag.idle", 10000);
+
+	/**
+	 * Sensors turned on for reads
+	 */
+	private final Map<String, WarmSensor> warmSensors = new HashMap<String, WarmSensor>();
+
+	/**
+	 * Bounds of the period characteristic of the sensors, in units of 10ms
+	 */
+	private static final int MIN_PERIOD = 10;
+	private static final int MAX_PERIOD = 255;
+
+	/**
+	 * Components whose reads are served from notifications, with their
+	 * notification period in milliseconds, e.g.
+	 * {@code -Dagile.tisensortag.stream=Temperature:1000,Pressure:2000}
+	 */
+	private static final Map<String, Long> STREAM_PERIODS = parseComponentValues(
+			System.getProperty("agile.tisensortag.stream", ""));
+
+	/**
+	 * Time in milliseconds before a stream that failed to start is tried
+	 * again
+	 */
+	private static final long STREAM_RETRY = Long.getLong("agile.tisensortag.stream.retry", 30000);
+
+	/**
+	 * Time in milliseconds without reads after which a stream is stopped, so
+	 * that the sensor is not kept on for nothing
+	 */
+	private static final long STREAM_IDLE = Long.getLong("agile.tisensortag.stream.idle", 60000);
+
+	/**
+	 * Streams of the components whose notifications serve reads, starting,
+	 * started or waiting to retry
+	 */
+	private final Map<String, Stream> streams = new ConcurrentHashMap<String, Stream>();
 
 	{
 		profile.add(new DeviceComponent(TEMPERATURE, "Degree celsius (°C)"));
 		// profile.add(new DeviceComponent(ACCELEROMETER, ""));
 		profile.add(new DeviceComponent(HUMIDITY, "Relative humidity (%RH)"));
+		readCachePolicies.put(HUMIDITY, new ReadCachePolicy(10000, 60000));
 		// profile.add(new DeviceComponent(MAGNETOMETER, ""));
 		profile.add(new DeviceComponent(PRESSURE, "Hecto pascal (hPa)"));
+		readCachePolicies.put(PRESSURE, new ReadCachePolicy(30000, 300000));
 		// profile.add(new DeviceComponent(GYROSCOPE, ""));
 		profile.add(new DeviceComponent(OPTICAL, "Light intensity (W/sr)"));
-	}
-
-	static {
-		sensors.put(TEMPERATURE,
-				new SensorUuid("f000aa00-0451-4000-b000-000000000000", "f000aa01-0451-4000-b000-000000000000",
-						"f000aa02-0451-4000-b000-000000000000", "f000aa03-0451-4000-b000-000000000000"));
-		sensors.put(HUMIDITY,
-				new SensorUuid("f000aa20-0451-4000-b000-000000000000", "f000aa21-0451-4000-b000-000000000000",
-						"f000aa22-0451-4000-b000-000000000000", "f000aa23-0451-4000-b000-000000000000"));
-		/*
-		 * sensors.put(MAGNETOMETER, new
-		 * SensorUuid("f000aa30-0451-4000-b000-000000000000",
-		 * "f000aa31-0451-4000-b000-000000000000",
-		 * "f000aa32-0451-4000-b000-000000000000",
-		 * "f000aa33-0451-4000-b000-000000000000"));
-		 */
-		sensors.put(PRESSURE,
-				new SensorUuid("f000aa40-0451-4000-b000-000000000000", "f000aa41-0451-4000-b000-000000000000",
-						"f000aa42-0451-4000-b000-000000000000", "f000aa44-0451-4000-b000-000000000000"));
-		/*
-		 * sensors.put(GYROSCOPE, new SensorUuid("f000aa50-0451-4000-b000-000000000000",
-		 * "f000aa51-0451-4000-b000-000000000000",
-		 * "f000aa52-0451-4000-b000-000000000000",
-		 * "f000aa53-0451-4000-b000-000000000000"));
-		 */
-
-		sensors.put(OPTICAL,
-				new SensorUuid("f000aa70-0451-4000-b000-000000000000", "f000aa71-0451-4000-b000-000000000000",
-						"f000aa72-0451-4000-b000-000000000000", "f000aa73-0451-4000-b000-000000000000"));
-		/*
-		 * sensors.put(ACCELEROMETER, new
-		 * SensorUuid("f000aa80-0451-4000-b000-000000000000",
-		 * "f000aa81-0451-4000-b000-000000000000",
-		 * "f000aa82-0451-4000-b000-000000000000",
-		 * "f000aa83-0451-4000-b000-000000000000"));
-		 */
-		sensors.put(IOCOMPONENTS, new SensorUuid("f000aa64-0451-4000-b000-000000000000",
-				"f000aa65-0451-4000-b000-000000000000", "f000aa66-0451-4000-b000-000000000000", ""));
 
+		sensorTable = sensors;
 	}
 
+	/**
+	 * The sensor service returns the data in an encoded format which can be
+	 * found in the wiki(http://processors.wiki.ti.com/index.php/SensorTag_User_Guide#
+	 * IR_Temperature_Sensor).
+	 */
+	protected static final SensorTable sensors = new SensorTable(
+			new SensorDescriptor(TEMPERATURE, "Degree celsius (°C)",
+					new SensorUuid("f000aa00-0451-4000-b000-000000000000", "f000aa01-0451-4000-b000-000000000000",
+							"f000aa02-0451-4000-b000-000000000000", "f000aa03-0451-4000-b000-000000000000"),
+					ValueFormat.FLOAT, new SensorField(Type.UINT16_LE, 2, 1 / 128.0)),
+			new SensorDescriptor(HUMIDITY, "Relative humidity (%RH)",
+					new SensorUuid("f000aa20-0451-4000-b000-000000000000", "f000aa21-0451-4000-b000-000000000000",
+							"f000aa22-0451-4000-b000-000000000000", "f000aa23-0451-4000-b000-000000000000"),
+					ValueFormat.FLOAT, new SensorField(Type.UINT16_LE, 2, 100 / 65536.0)),
+			/*
+			 * new SensorDescriptor(MAGNETOMETER, "", new
+			 * SensorUuid("f000aa30-0451-4000-b000-000000000000",
+			 * "f000aa31-0451-4000-b000-000000000000",
+			 * "f000aa32-0451-4000-b000-000000000000",
+			 * "f000aa33-0451-4000-b000-000000000000"), ...),
+			 */
+			// Firmware 1.30 sends the pressure as the sum of the signed bytes, as
+			// explained here (I didn't check as I was unable to update firmware)
+			// https://github.com/evothings/evothings-examples/issues/161
+			// After update to 1.50 (latest) use new SensorField(Type.UINT24_LE, 3, 0.01)
+			new SensorDescriptor(PRESSURE, "Hecto pascal (hPa)",
+					new SensorUuid("f000aa40-0451-4000-b000-000000000000", "f000aa41-0451-4000-b000-000000000000",
+							"f000aa42-0451-4000-b000-000000000000", "f000aa44-0451-4000-b000-000000000000"),
+					ValueFormat.FLOAT,
+					new SensorField(data -> ((data[5] << 16) + (data[4] << 8) + data[3]) / 100.0f, 6)),
+			/*
+			 * new SensorDescriptor(GYROSCOPE, "", new SensorUuid("f000aa50-0451-4000-b000-000000000000",
+			 * "f000aa51-0451-4000-b000-000000000000",
+			 * "f000aa52-0451-4000-b000-000000000000",
+			 * "f000aa53-0451-4000-b000-000000000000"), ...),
+			 */
+			new SensorDescriptor(OPTICAL, "Light intensity (W/sr)",
+					new SensorUuid("f000aa70-0451-4000-b000-000000000000", "f000aa71-0451-4000-b000-000000000000",
+							"f000aa72-0451-4000-b000-000000000000", "f000aa73-0451-4000-b000-000000000000"),
+					ValueFormat.FLOAT, new SensorField(Type.UINT16_LE, 0, TISensorTag::convertOpticalRead)),
+			/*
+			 * new SensorDescriptor(ACCELEROMETER, "", new
+			 * SensorUuid("f000aa80-0451-4000-b000-000000000000",
+			 * "f000aa81-0451-4000-b000-000000000000",
+			 * "f000aa82-0451-4000-b000-000000000000",
+			 * "f000aa83-0451-4000-b000-000000000000"), ...),
+			 */
+			new SensorDescriptor(IOCOMPONENTS, "", new SensorUuid("f000aa64-0451-4000-b000-000000000000",
+					"f000aa65-0451-4000-b000-000000000000", "f000aa66-0451-4000-b000-000000000000", ""),
+					ValueFormat.FLOAT));
+
 	static {
 		commands.put("TURN_ON_LED1", TURN_ON_LED1);
 		commands.put("TURN_ON_LED2", TURN_ON_LED2);
@@ -134,14 +205,255 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 
 	@Override
 	public void Connect() throws DBusException {
+		coolDownAll();
+		releaseStreams();
 		super.Connect();
-		for (String componentName : subscribedComponents.keySet()) {
-			if (subscribedComponents.get(componentName) > 0) {
-				logger.info("Resubscribing to {}", componentName);
-				deviceProtocol.Write(address, getEnableSensorProfile(componentName), TURN_ON_SENSOR);
-				deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
+		for (String componentName : subscribedComponents.subscribed()) {
+			logger.info("Resubscribing to {}", componentName);
+			enableNotifications(componentName);
+		}
+	}
+
+	@Override
+	public void Disconnect() throws DBusException {
+		coolDownAll();
+		releaseStreams();
+		super.Disconnect();
+	}
+
+	/**
+	 * Reads of the components configured in {@link #STREAM_PERIODS} enable
+	 * their notifications, so that the following reads return the last
+	 * notified value instead of reading the sensor. A single start runs at a
+	 * time per component, and a failed one is retried after
+	 * {@link #STREAM_RETRY} milliseconds.
+	 */
+	@Override
+	protected CompletableFuture<RecordObject> readFromCache(String componentName) {
+		Long period = STREAM_PERIODS.get(componentName);
+		if (period != null) {
+			long now = System.currentTimeMillis();
+			Stream stream = streams.get(componentName);
+			if (stream == null) {
+				Stream starting = new Stream(now);
+				if (streams.putIfAbsent(componentName, starting) == null) {
+					submitStart(componentName, period, starting);
+				}
+			} else if (stream.isRetryDue(now)) {
+				Stream starting = new Stream(now);
+				if (streams.replace(componentName, stream, starting)) {
+					submitStart(componentName, period, starting);
+				}
+			} else {
+				stream.lastRead = now;
 			}
 		}
+		return super.readFromCache(componentName);
+	}
+
+	@Override
+	protected ReadCachePolicy getReadCachePolicy(String componentName) {
+		Stream stream = streams.get(componentName);
+		ReadCachePolicy streamPolicy = stream == null ? null : stream.policy;
+		return streamPolicy != null ? streamPolicy : super.getReadCachePolicy(componentName);
+	}
+
+	private void submitStart(String componentName, long period, Stream stream) {
+		try {
+			DeviceExecutors.readExecutor().execute(() -> startStream(componentName, period, stream));
+		} catch (RejectedExecutionException e) {
+			logger.debug("Unable to start notifications of {}", componentName);
+			stream.failed(System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Enables the notifications of the component at the given period, sharing
+	 * them with its subscribers
+	 * 
+	 * @param componentName
+	 * @param period
+	 *            period in milliseconds
+	 * @param stream
+	 *            the stream being started
+	 */
+	private void startStream(String componentName, long period, Stream stream) {
+		if (!isSensorSupported(componentName) || !isConnected()) {
+			stream.failed(System.currentTimeMillis());
+			return;
+		}
+		int periodValue = toPeriodValue(period);
+		try {
+			try {
+				awaitGatt(gattWrite(getFrequencyProfile(componentName), new byte[] { (byte) periodValue }));
+			} catch (Exception e) {
+				// the sensor keeps notifying at its default period
+				logger.warn("Unable to set the period of {}", componentName);
+				periodValue = (int) (SENSOR_WARM_UP_TIME / 10);
+			}
+			subscribeComponent(componentName, () -> enableNotifications(componentName));
+			stream.held.set(true);
+			if (streams.get(componentName) != stream) {
+				// released by a connect or a disconnect in the meantime
+				drop(componentName, stream);
+				return;
+			}
+			ReadCachePolicy readPolicy = super.getReadCachePolicy(componentName);
+			// a single missed notification still serves the last one
+			stream.policy = new ReadCachePolicy(2 * 10L * periodValue, readPolicy.maxStale);
+			logger.info("Serving reads of {} from notifications every {} ms", componentName, 10 * periodValue);
+			scheduleIdleCheck(componentName, stream, STREAM_IDLE);
+		} catch (Exception e) {
+			logger.warn("Unable to enable notifications of {}", componentName, e);
+			stream.failed(System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Stops the stream once it is not read for {@link #STREAM_IDLE}
+	 * milliseconds
+	 */
+	private void scheduleIdleCheck(String componentName, Stream stream, long delay) {
+		try {
+			stream.idleTimer = DeviceExecutors.scheduler().schedule(() -> {
+				long idle = System.currentTimeMillis() - stream.lastRead;
+				if (idle < STREAM_IDLE) {
+					scheduleIdleCheck(componentName, stream, STREAM_IDLE - idle);
+					return;
+				}
+				try {
+					DeviceExecutors.readExecutor().execute(() -> stopStream(componentName, stream));
+				} catch (RejectedExecutionException e) {
+					scheduleIdleCheck(componentName, stream, STREAM_IDLE);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.debug("Unable to schedule the idle check of {}", componentName);
+		}
+	}
+
+	/**
+	 * Stops an idle stream, disabling the notifications unless subscribers
+	 * still use them
+	 */
+	private void stopStream(String componentName, Stream stream) {
+		if (!streams.remove(componentName, stream) || !stream.held.compareAndSet(true, false)) {
+			return;
+		}
+		logger.info("Stopping the idle notifications of {}", componentName);
+		try {
+			unsubscribeComponent(componentName, () -> disableNotifications(componentName));
+		} catch (Exception e) {
+			logger.debug("Unable to disable notifications of {}", componentName, e);
+		}
+	}
+
+	/**
+	 * Drops the subscriptions held by the streams, e.g. because the device
+	 * lost them. The streams restart on the next read.
+	 */
+	private void releaseStreams() {
+		for (Map.Entry<String, Stream> entry : streams.entrySet()) {
+			if (streams.remove(entry.getKey(), entry.getValue())) {
+				drop(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Uncounts the subscription of a stream without disabling the
+	 * notifications, which the device no longer has
+	 */
+	private void drop(String componentName, Stream stream) {
+		ScheduledFuture<?> idleTimer = stream.idleTimer;
+		if (idleTimer != null) {
+			idleTimer.cancel(false);
+		}
+		if (!stream.held.compareAndSet(true, false)) {
+			return;
+		}
+		try {
+			unsubscribeComponent(componentName, () -> {
+			});
+		} catch (DBusException e) {
+			// nothing to disable at protocol level
+		}
+	}
+
+	/**
+	 * @param period
+	 *            period in milliseconds
+	 * @return the value of the period characteristic, clamped to the range
+	 *         supported by the firmware
+	 */
+	private static int toPeriodValue(long period) {
+		return (int) Math.max(MIN_PERIOD, Math.min(MAX_PERIOD, period / 10));
+	}
+
+	/**
+	 * Notifications enabled only to serve reads are not published
+	 */
+	@Override
+	protected boolean isPublished(String componentName) {
+		Stream stream = streams.get(componentName);
+		int streamSubscriptions = stream != null && stream.held.get() ? 1 : 0;
+		return subscribedComponents.count(getSubscriptionKey(componentName)) > streamSubscriptions;
+	}
+
+	/**
+	 * Turns on the sensor and enables its notifications. The two writes go to
+	 * different characteristics and are pipelined by the GATT queue.
+	 * 
+	 * @param componentName
+	 * @throws DBusException
+	 */
+	private void enableNotifications(String componentName) throws DBusException {
+		awaitGatt(enableNotificationsAsync(componentName));
+	}
+
+	private CompletableFuture<Void> enableNotificationsAsync(String componentName) {
+		/*
+		 * Setting the period on the Pressure sensor was not working. Since we are
+		 * anyway using the default value, keep this disabled. TODO: verify pressure
+		 * senosr. byte[] period = { 100 }; deviceProtocol.Write(address,
+		 * getFrequencyProfile(componentName), period);
+		 */
+		return CompletableFuture.allOf(gattWrite(getConfigProfile(componentName), TURN_ON_SENSOR),
+				gattSubscribe(getReadValueProfile(componentName)));
+	}
+
+	/**
+	 * Disables the notifications of the sensor and turns it off, unless reads
+	 * keep it warm
+	 * 
+	 * @param componentName
+	 * @throws DBusException
+	 */
+	private void disableNotifications(String componentName) throws DBusException {
+		awaitGatt(disableNotificationsAsync(componentName));
+	}
+
+	private CompletableFuture<Void> disableNotificationsAsync(String componentName) {
+		CompletableFuture<Void> unsubscribe = gattUnsubscribe(getReadValueProfile(componentName));
+		if (isWarm(componentName)) {
+			return unsubscribe;
+		}
+		return CompletableFuture.allOf(unsubscribe, gattWrite(getConfigProfile(componentName), TURN_OFF_SENSOR));
+	}
+
+	/**
+	 * Turns on the sensors and enables their notifications without waiting for
+	 * the replies of the device, so that the GATT writes of several sensors
+	 * are in flight at once
+	 */
+	@Override
+	protected SubscriptionCounter.AsyncTransition getAsyncSubscribe() {
+		return this::enableNotificationsAsync;
+	}
+
+	@Override
+	protected SubscriptionCounter.AsyncTransition getAsyncUnsubscribe() {
+		return this::disableNotificationsAsync;
 	}
 
 	@Override
@@ -150,22 +462,16 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 			if (isConnected()) {
 				if (isSensorSupported(sensorName.trim())) {
 					try {
-						if (!hasOtherActiveSubscription(sensorName)) {
-							// turn on sensor
-							deviceProtocol.Write(address, getEnableSensorProfile(sensorName), TURN_ON_SENSOR);
-						}
-						/**
-						 * The default read data period (frequency) of most of sensor tag sensors is
-						 * 1000ms therefore the first data will be available to read after 1000ms for
-						 * these we call Read method after 1 second
-						 */
-						Thread.sleep(1010);
-						// read value
-						byte[] readValue = deviceProtocol.Read(address, getReadValueProfile(sensorName));
-						if (!hasOtherActiveSubscription(sensorName)) {
-							deviceProtocol.Write(address, getTurnOffSensorProfile(sensorName), TURN_OFF_SENSOR);
+						long warmUp = turnOnForRead(sensorName);
+						try {
+							if (warmUp > 0) {
+								Thread.sleep(warmUp);
+							}
+						} catch (InterruptedException e) {
+							release(sensorName);
+							throw e;
 						}
-						return formatReading(sensorName, readValue);
+						return formatReading(sensorName, readAndRelease(sensorName));
 					} catch (Exception e) {
 						logger.debug("Error in reading value from Sensor {}", e);
 						e.printStackTrace();
@@ -185,15 +491,331 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 		return null;
 	}
 
+	/**
+	 * Same as {@link #DeviceRead(String)}, but the sensor warm up is awaited on
+	 * the shared scheduler so that no thread is parked in the meantime
+	 */
+	@Override
+	protected CompletableFuture<String> DeviceReadAsync(String sensorName) {
+		CompletableFuture<String> result = new CompletableFuture<String>();
+		DeviceExecutors.readExecutor().execute(() -> {
+			try {
+				if (!(protocol.equals(BLUETOOTH_LOW_ENERGY)) || (deviceProtocol == null)) {
+					throw new AgileNoResultException("Protocol not supported: " + protocol);
+				}
+				if (!isConnected()) {
+					throw new AgileNoResultException("BLE Device not connected: " + deviceName);
+				}
+				if (!isSensorSupported(sensorName.trim())) {
+					throw new AgileNoResultException("Sensor not supported:" + sensorName);
+				}
+				long warmUp = turnOnForRead(sensorName);
+				if (warmUp <= 0) {
+					result.complete(formatReading(sensorName, readAndRelease(sensorName)));
+					return;
+				}
+				DeviceExecutors.scheduler().schedule(() -> {
+					try {
+						DeviceExecutors.readExecutor().execute(() -> {
+							try {
+								result.complete(formatReading(sensorName, readAndRelease(sensorName)));
+							} catch (Exception e) {
+								result.completeExceptionally(e);
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						release(sensorName);
+						result.completeExceptionally(e);
+					}
+				}, warmUp, TimeUnit.MILLISECONDS);
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Turns on all the sensors first, with their configuration writes in
+	 * flight at once so that they warm up together, then reads them back to
+	 * back and releases them together
+	 */
+	@Override
+	protected CompletableFuture<Map<String, String>> DeviceReadAllAsync(List<String> sensorNames) {
+		CompletableFuture<Map<String, String>> result = new CompletableFuture<Map<String, String>>();
+		DeviceExecutors.readExecutor().execute(() -> {
+			try {
+				if (!(protocol.equals(BLUETOOTH_LOW_ENERGY)) || (deviceProtocol == null)) {
+					throw new AgileNoResultException("Protocol not supported: " + protocol);
+				}
+				if (!isConnected()) {
+					throw new AgileNoResultException("BLE Device not connected: " + deviceName);
+				}
+				List<String> turningOn = new ArrayList<String>(sensorNames.size());
+				List<CompletableFuture<Long>> warmUps = new ArrayList<CompletableFuture<Long>>(sensorNames.size());
+				for (String sensorName : sensorNames) {
+					if (isSensorSupported(sensorName.trim())) {
+						turningOn.add(sensorName);
+						warmUps.add(turnOnForReadAsync(sensorName));
+					}
+				}
+				CompletableFuture.allOf(warmUps.toArray(new CompletableFuture<?>[warmUps.size()]))
+						.whenComplete((on, error) -> {
+							try {
+								DeviceExecutors.readExecutor()
+										.execute(() -> readAllAfterWarmUp(turningOn, warmUps, result));
+							} catch (RejectedExecutionException e) {
+								for (int i = 0; i < warmUps.size(); i++) {
+									if (!warmUps.get(i).isCompletedExceptionally()) {
+										release(turningOn.get(i));
+									}
+								}
+								result.completeExceptionally(e);
+							}
+						});
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Reads the sensors turned on by {@link #DeviceReadAllAsync(List)} once
+	 * the slowest of them is warm
+	 */
+	private void readAllAfterWarmUp(List<String> sensorNames, List<CompletableFuture<Long>> warmUps,
+			CompletableFuture<Map<String, String>> result) {
+		List<String> turnedOn = new ArrayList<String>(sensorNames.size());
+		long warmUp = 0;
+		for (int i = 0; i < sensorNames.size(); i++) {
+			try {
+				warmUp = Math.max(warmUp, warmUps.get(i).join());
+				turnedOn.add(sensorNames.get(i));
+			} catch (CompletionException e) {
+				logger.debug("Error in turning on sensor {}", sensorNames.get(i), e.getCause());
+			}
+		}
+		Runnable readAll = () -> {
+			Map<String, String> values = new HashMap<String, String>();
+			for (String sensorName : turnedOn) {
+				try {
+					values.put(sensorName, formatReading(sensorName, readAndRelease(sensorName)));
+				} catch (Exception e) {
+					logger.debug("Error in reading value from Sensor {}", sensorName, e);
+				}
+			}
+			result.complete(values);
+		};
+		if (warmUp <= 0) {
+			readAll.run();
+			return;
+		}
+		try {
+			DeviceExecutors.scheduler().schedule(() -> {
+				try {
+					DeviceExecutors.readExecutor().execute(readAll);
+				} catch (RejectedExecutionException e) {
+					for (String sensorName : turnedOn) {
+						release(sensorName);
+					}
+					result.completeExceptionally(e);
+				}
+			}, warmUp, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			for (String sensorName : turnedOn) {
+				release(sensorName);
+			}
+			result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Turns on the sensor unless it is already on for a subscription or for a
+	 * recent read. Every call must be followed by {@link #release(String)}.
+	 * 
+	 * @param sensorName
+	 * @return time in milliseconds to wait before the sensor has a value
+	 * @throws DBusException
+	 */
+	private long turnOnForRead(String sensorName) throws DBusException {
+		CompletableFuture<Long> warmUp = turnOnForReadAsync(sensorName);
+		try {
+			return awaitGatt(warmUp);
+		} catch (DBusException e) {
+			// timed out, the read is released once the sensor is on
+			warmUp.thenRun(() -> release(sensorName));
+			throw e;
+		}
+	}
+
+	/**
+	 * Same as {@link #turnOnForRead(String)} without waiting for the sensor to
+	 * be turned on. The read must not be released if the future fails.
+	 * 
+	 * @param sensorName
+	 * @return a future completed with the time in milliseconds to wait before
+	 *         the sensor has a value
+	 */
+	private CompletableFuture<Long> turnOnForReadAsync(String sensorName) {
+		WarmSensor warm;
+		CompletableFuture<Void> previousOff = null;
+		boolean turnOn = false;
+		synchronized (warmSensors) {
+			warm = warmSensors.get(sensorName);
+			if (warm == null || warm.off != null) {
+				if (hasOtherActiveSubscription(sensorName)) {
+					return CompletableFuture.completedFuture(0L);
+				}
+				previousOff = warm == null ? null : warm.off;
+				warm = new WarmSensor();
+				warmSensors.put(sensorName, warm);
+				turnOn = true;
+			}
+			if (warm.idleTimer != null) {
+				warm.idleTimer.cancel(false);
+				warm.idleTimer = null;
+			}
+			warm.readers++;
+		}
+		if (turnOn) {
+			turnOn(sensorName, warm, previousOff);
+		}
+		return warm.ready.thenApply(turnedOn -> turnedOn + SENSOR_WARM_UP_TIME - System.currentTimeMillis());
+	}
+
+	/**
+	 * Writes the configuration turning on a sensor for reads, after the turn
+	 * off of its previous use if any, and forgets the sensor if the write
+	 * fails
+	 */
+	private void turnOn(String sensorName, WarmSensor warm, CompletableFuture<Void> previousOff) {
+		CompletableFuture<Void> after = previousOff == null ? CompletableFuture.completedFuture(null) : previousOff;
+		after.thenCompose(off -> gattWrite(getConfigProfile(sensorName), TURN_ON_SENSOR)).whenComplete((on, e) -> {
+			if (e == null) {
+				warm.ready.complete(System.currentTimeMillis());
+				return;
+			}
+			synchronized (warmSensors) {
+				warmSensors.remove(sensorName, warm);
+			}
+			warm.ready.completeExceptionally(e);
+		});
+	}
+
+	/**
+	 * Reads the raw value of the sensor, then releases it
+	 * 
+	 * @param sensorName
+	 * @return
+	 * @throws DBusException
+	 */
+	private byte[] readAndRelease(String sensorName) throws DBusException {
+		try {
+			return awaitGatt(gattRead(getReadValueProfile(sensorName)));
+		} finally {
+			release(sensorName);
+		}
+	}
+
+	/**
+	 * Ends a read started with {@link #turnOnForRead(String)}. The sensor is
+	 * turned off once no read used it for {@link #SENSOR_IDLE_TIME}
+	 * milliseconds.
+	 * 
+	 * @param sensorName
+	 */
+	private void release(String sensorName) {
+		synchronized (warmSensors) {
+			WarmSensor warm = warmSensors.get(sensorName);
+			if (warm == null || warm.off != null || --warm.readers > 0) {
+				return;
+			}
+			if (SENSOR_IDLE_TIME <= 0) {
+				coolDown(sensorName, warm);
+				return;
+			}
+			try {
+				warm.idleTimer = DeviceExecutors.scheduler().schedule(() -> {
+					try {
+						DeviceExecutors.readExecutor().execute(() -> coolDown(sensorName, warm));
+					} catch (RejectedExecutionException e) {
+						coolDown(sensorName, warm);
+					}
+				}, SENSOR_IDLE_TIME, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				coolDown(sensorName, warm);
+			}
+		}
+	}
+
+	/**
+	 * Turns off a sensor that was turned on for reads, unless it is now used by
+	 * a subscription or by another read
+	 * 
+	 * @param sensorName
+	 * @param warm
+	 */
+	private void coolDown(String sensorName, WarmSensor warm) {
+		CompletableFuture<Void> off;
+		synchronized (warmSensors) {
+			if (warm.readers > 0 || warm.off != null || warmSensors.get(sensorName) != warm) {
+				return;
+			}
+			if (hasOtherActiveSubscription(sensorName) || !isConnected()) {
+				warmSensors.remove(sensorName);
+				return;
+			}
+			// stays in the map until turned off, so that a new read turns it
+			// on after the write below
+			off = warm.off = new CompletableFuture<Void>();
+		}
+		gattWrite(getConfigProfile(sensorName), TURN_OFF_SENSOR).whenComplete((result, e) -> {
+			if (e != null) {
+				logger.debug("Error in turning off sensor {}", sensorName, e);
+			}
+			synchronized (warmSensors) {
+				warmSensors.remove(sensorName, warm);
+			}
+			off.complete(null);
+		});
+	}
+
+	/**
+	 * Forgets the sensors turned on for reads, e.g. because the device lost
+	 * their state
+	 */
+	private void coolDownAll() {
+		synchronized (warmSensors) {
+			for (WarmSensor warm : warmSensors.values()) {
+				if (warm.idleTimer != null) {
+					warm.idleTimer.cancel(false);
+				}
+			}
+			warmSensors.clear();
+		}
+	}
+
+	/**
+	 * @param sensorName
+	 * @return true if the sensor is on for a read
+	 */
+	private boolean isWarm(String sensorName) {
+		synchronized (warmSensors) {
+			WarmSensor warm = warmSensors.get(sensorName);
+			return warm != null && warm.off == null;
+		}
+	}
+
 	public String NotificationRead(String componentName) {
 		if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
 			if (isConnected()) {
 				if (isSensorSupported(componentName.trim())) {
 					try {
-						deviceProtocol.Write(address, getEnableSensorProfile(componentName), TURN_ON_SENSOR);
+						awaitGatt(gattWrite(getConfigProfile(componentName), TURN_ON_SENSOR));
 						byte[] period = { 100 };
-						deviceProtocol.Write(address, getFrequencyProfile(componentName), period);
-						byte[] result = deviceProtocol.NotificationRead(address, getReadValueProfile(componentName));
+						awaitGatt(gattWrite(getFrequencyProfile(componentName), period));
+						byte[] result = awaitGatt(gattNotificationRead(getReadValueProfile(componentName)));
 						return formatReading(componentName, result);
 					} catch (DBusException e) {
 						e.printStackTrace();
@@ -211,26 +833,13 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 	}
 
 	@Override
-	public synchronized void Subscribe(String componentName) {
+	public void Subscribe(String componentName) {
 		logger.info("Subscribe to {}", componentName);
 		if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
 			if (isConnected()) {
 				if (isSensorSupported(componentName.trim())) {
 					try {
-						if (!hasOtherActiveSubscription()) {
-							addNewRecordSignalHandler();
-						}
-						if (!hasOtherActiveSubscription(componentName)) {
-							deviceProtocol.Write(address, getEnableSensorProfile(componentName), TURN_ON_SENSOR);
-							/*
-							 * Setting the period on the Pressure sensor was not working. Since we are
-							 * anyway using the default value, keep this disabled. TODO: verify pressure
-							 * senosr. byte[] period = { 100 }; deviceProtocol.Write(address,
-							 * getFrequencyProfile(componentName), period);
-							 */
-							deviceProtocol.Subscribe(address, getReadValueProfile(componentName));
-						}
-						subscribedComponents.put(componentName, subscribedComponents.get(componentName) + 1);
+						subscribeComponent(componentName, () -> enableNotifications(componentName));
 					} catch (DBusException e) {
 						e.printStackTrace();
 					}
@@ -246,22 +855,13 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 	}
 
 	@Override
-	public synchronized void Unsubscribe(String componentName) throws DBusException {
+	public void Unsubscribe(String componentName) throws DBusException {
 		logger.info("Unsubscribe from {}", componentName);
 		if ((protocol.equals(BLUETOOTH_LOW_ENERGY)) && (deviceProtocol != null)) {
 			if (isConnected()) {
 				if (isSensorSupported(componentName.trim())) {
 					try {
-						subscribedComponents.put(componentName, subscribedComponents.get(componentName) - 1);
-						if (!hasOtherActiveSubscription(componentName)) {
-							// disable notification
-							deviceProtocol.Unsubscribe(address, getReadValueProfile(componentName));
-							// turn off sensor
-							deviceProtocol.Write(address, getTurnOffSensorProfile(componentName), TURN_OFF_SENSOR);
-						}
-						if (!hasOtherActiveSubscription()) {
-							removeNewRecordSignalHandler();
-						}
+						unsubscribeComponent(componentName, () -> disableNotifications(componentName));
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
@@ -282,9 +882,15 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 			if (isConnected()) {
 				try {
 					if(payload.equals("0")) {
-						deviceProtocol.Write(address, getEnableSensorProfile(componentName), TURN_OFF_SENSOR);
+						synchronized (warmSensors) {
+							WarmSensor warm = warmSensors.remove(componentName);
+							if (warm != null && warm.idleTimer != null) {
+								warm.idleTimer.cancel(false);
+							}
+						}
+						awaitGatt(gattWrite(getConfigProfile(componentName), TURN_OFF_SENSOR));
 					} else {
-						deviceProtocol.Write(address, getEnableSensorProfile(componentName), TURN_ON_SENSOR);
+						awaitGatt(gattWrite(getConfigProfile(componentName), TURN_ON_SENSOR));
 					}
 				} catch (Exception ex) {
 					logger.error("Exception occured in Write: " + ex);
@@ -303,8 +909,8 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 			if (isConnected()) {
 
 				try {
-					deviceProtocol.Write(address, getEnableSensorProfile(IOCOMPONENTS), TURN_ON_SENSOR);
-					deviceProtocol.Write(address, getReadValueProfile(IOCOMPONENTS), commands.get(commandId));
+					awaitGatt(gattWrite(getConfigProfile(IOCOMPONENTS), TURN_ON_SENSOR));
+					awaitGatt(gattWrite(getReadValueProfile(IOCOMPONENTS), commands.get(commandId)));
 				} catch (Exception ex) {
 					logger.error("Exception occured in Execute: " + ex);
 				}
@@ -324,160 +930,80 @@ public class TISensorTag extends AgileBLEDevice implements Device {
 	}
 
 	// =======================Utility methods===========================
-	@Override
-	protected boolean isSensorSupported(String sensorName) {
-		return sensors.containsKey(sensorName);
-	}
+	private static double convertOpticalRead(double raw) {
+		int e = ((int) raw & 0x0F000) >> 12; // Interim value in calculation
+		int m = (int) raw & 0x0FFF; // Interim value in calculation
 
-	private Map<String, String> getEnableSensorProfile(String sensorName) {
-		Map<String, String> profile = new HashMap<String, String>();
-		SensorUuid s = sensors.get(sensorName);
-		if (s != null) {
-			profile.put(GATT_SERVICE, s.serviceUuid);
-			profile.put(GATT_CHARACTERSTICS, s.charConfigUuid);
-		}
-		return profile;
+		return (float) (m * (0.01 * Math.pow(2.0, e)));
 	}
 
-	private Map<String, String> getReadValueProfile(String sensorName) {
-		Map<String, String> profile = new HashMap<String, String>();
-		SensorUuid s = sensors.get(sensorName);
-		if (s != null) {
-			profile.put(GATT_SERVICE, s.serviceUuid);
-			profile.put(GATT_CHARACTERSTICS, s.charValueUuid);
-		}
-		return profile;
-	}
+	/**
+	 * A sensor turned on for reads
+	 */
+	private static class WarmSensor {
 
-	private Map<String, String> getTurnOffSensorProfile(String sensorName) {
-		Map<String, String> profile = new HashMap<String, String>();
-		SensorUuid s = sensors.get(sensorName);
-		if (s != null) {
-			profile.put(GATT_SERVICE, s.serviceUuid);
-			profile.put(GATT_CHARACTERSTICS, s.charConfigUuid);
-		}
-		return profile;
-	}
+		/**
+		 * Completed with the time the sensor was turned on
+		 */
+		final CompletableFuture<Long> ready = new CompletableFuture<Long>();
 
-	private Map<String, String> getFrequencyProfile(String sensorName) {
-		Map<String, String> profile = new HashMap<String, String>();
-		SensorUuid s = sensors.get(sensorName);
-		if (s != null) {
-			profile.put(GATT_SERVICE, s.serviceUuid);
-			profile.put(GATT_CHARACTERSTICS, s.charFreqUuid);
-		}
-		return profile;
-	}
+		/**
+		 * Turn off in progress, null while the sensor is on
+		 */
+		CompletableFuture<Void> off;
 
-	/**
-	 *
-	 * The sensor service returns the data in an encoded format which can be found
-	 * in the wiki(http://processors.wiki.ti.com/index.php/SensorTag_User_Guide#
-	 * IR_Temperature_Sensor). Convert the raw sensor reading value format to human
-	 * understandable value and print it.
-	 * 
-	 * @param sensorName
-	 *            Name of the sensor to read value from
-	 * @param readingValue
-	 *            the raw value read from the sensor
-	 * @return
-	 */
-	@Override
-	protected String formatReading(String sensorName, byte[] readData) {
-		float result;
-		int rawData;
-		if (sensorName.contains(TEMPERATURE)) {
-			rawData = shortSignedAtOffset(readData, 2);
-			result = convertCelsius(rawData);
-		} else if (sensorName.contains(HUMIDITY)) {
-			rawData = shortSignedAtOffset(readData, 2);
-			result = convertHumidity(rawData);
-		} else if (sensorName.contains(PRESSURE)) {
-			
-			// int lowerByte = Byte.toUnsignedInt(readData[3]);
-			// int upperByte = Byte.toUnsignedInt(readData[4]);
-			// int upper = Byte.toUnsignedInt(readData[5]);
-			// int rawResult = (upperByte << 8) + (lowerByte & 0xff) + upper;
-			// float pressure = convertPressure(rawResult);
-			// result = pressure;
-
-			// Solved in new firmware as explained here (I didn't check as I was unable to update firmware)
-			// Current firmware 1.30
-			// After update to 1.50 (latest) uncomment the upper code and use that
-			// https://github.com/evothings/evothings-examples/issues/161
-			float rawP = (readData[5] << 16) + (readData[4] << 8) + readData[3];
-			float pressure = convertPressure((int) rawP);
-			result = pressure;
+		/**
+		 * Number of reads in progress
+		 */
+		int readers;
 
-		} else if (sensorName.equals(OPTICAL)) {
-			rawData = shortSignedAtOffset(readData, 0);
-			result = convertOpticalRead(rawData);
-		} else {
-			// TODO Other sensor values
-			return readData.toString();
-		}
-		return Float.toString(result);
+		/**
+		 * Pending turn off, null while the sensor is read
+		 */
+		ScheduledFuture<?> idleTimer;
 	}
 
 	/**
-	 * Gyroscope, Magnetometer, Barometer, IR temperature all store 16 bit two's
-	 * complement values in the format LSB MSB.
-	 *
-	 * This function extracts these 16 bit two's complement values.
+	 * Notifications of a component enabled to serve its reads
 	 */
-	private static Integer shortSignedAtOffset(byte[] value, int offset) {
-		Integer lowerByte = Byte.toUnsignedInt(value[offset]);
-		Integer upperByte = Byte.toUnsignedInt(value[offset + 1]); // Note:
-		return (upperByte << 8) + lowerByte;
-	}
+	private static class Stream {
 
-	/**
-	 * Converts temperature into degree Celsius
-	 *
-	 * @param raw
-	 * @return
-	 */
-	private float convertCelsius(int raw) {
-		return raw / 128f;
-	}
+		/**
+		 * Whether the stream holds a subscription to its component
+		 */
+		final AtomicBoolean held = new AtomicBoolean();
 
-	/**
-	 * Formats humidity value according to SensorTag WIKI
-	 * 
-	 * @param raw
-	 * @return
-	 */
-	private float convertHumidity(int raw) {
-		return (((float) raw) / 65536) * 100;
-	}
+		/**
+		 * Cache policy of the reads once the notifications are enabled, null
+		 * until then
+		 */
+		volatile ReadCachePolicy policy;
 
-	private float convertPressure(int raw) {
-		return raw / 100.0f;
-	}
+		/**
+		 * Time of the last read of the component
+		 */
+		volatile long lastRead;
 
-	private float convertOpticalRead(int raw) {
-		int e = (raw & 0x0F000) >> 12; // Interim value in calculation
-		int m = raw & 0x0FFF; // Interim value in calculation
+		/**
+		 * Time after which a failed start is retried, 0 while starting or
+		 * started
+		 */
+		volatile long retryAt;
 
-		return (float) (m * (0.01 * Math.pow(2.0, e)));
-	}
+		volatile ScheduledFuture<?> idleTimer;
 
-	/**
-	 * Given the profile of the component returns the name of the sensor
-	 * 
-	 * @param uuid
-	 * @return
-	 */
-	@Override
-	protected String getComponentName(Map<String, String> profile) {
-		String serviceUUID = profile.get(GATT_SERVICE);
-		String charValueUuid = profile.get(GATT_CHARACTERSTICS);
-		for (Entry<String, SensorUuid> su : sensors.entrySet()) {
-			if (su.getValue().serviceUuid.equals(serviceUUID) && su.getValue().charValueUuid.equals(charValueUuid)) {
-				return su.getKey();
-			}
+		Stream(long now) {
+			this.lastRead = now;
+		}
+
+		void failed(long now) {
+			retryAt = now + STREAM_RETRY;
+		}
+
+		boolean isRetryDue(long now) {
+			long retry = retryAt;
+			return retry > 0 && now >= retry;
 		}
-		return null;
 	}
 
 	private byte[] getBytes(String payload) {
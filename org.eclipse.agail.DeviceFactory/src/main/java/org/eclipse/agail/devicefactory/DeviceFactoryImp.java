@@ -13,6 +13,7 @@
 package org.eclipse.agail.devicefactory;
 
 import org.eclipse.agail.device.base.LoadClass;
+import org.eclipse.agail.device.base.DeviceImp;
 import org.eclipse.agail.Device;
 import org.eclipse.agail.DeviceFactory;
 import org.eclipse.agail.object.AbstractAgileObject;
@@ -337,6 +338,9 @@ public class DeviceFactoryImp extends AbstractAgileObject implements DeviceFacto
                     logger.debug("The Constructor was loaded");
                     device = (Device) constructor.newInstance(deviceOverview);
                     logger.debug("The device was loaded");
+                    if (device instanceof DeviceImp) {
+                        ((DeviceImp) device).startSampling();
+                    }
                 }
 
             }
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.device.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SubscriptionCounterTest {
+
+	private static final String KEY = "key";
+
+	private static final String COMPONENT = "component";
+
+	private static final long TIMEOUT = 100;
+
+	private final SubscriptionCounter counter = new SubscriptionCounter();
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final AtomicInteger enabled = new AtomicInteger();
+
+	private final AtomicInteger disabled = new AtomicInteger();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static Map<String, List<String>> components(String... componentNames) {
+		return Collections.singletonMap(KEY, Arrays.asList(componentNames));
+	}
+
+	private SubscriptionCounter.AsyncTransition enable(CompletableFuture<Void> transition) {
+		return componentName -> {
+			enabled.incrementAndGet();
+			return transition;
+		};
+	}
+
+	private SubscriptionCounter.AsyncTransition disable() {
+		return componentName -> {
+			disabled.incrementAndGet();
+			return CompletableFuture.completedFuture(null);
+		};
+	}
+
+	@Test
+	public void subscribeAllCountsEachComponentOnce() {
+		Map<String, Throwable> errors = counter.subscribeAll(components(COMPONENT, COMPONENT),
+				enable(CompletableFuture.completedFuture(null)), disable(), TIMEOUT);
+
+		assertTrue(errors.isEmpty());
+		assertEquals(1, enabled.get());
+		assertEquals(2, counter.count(KEY));
+		assertEquals(Collections.singletonList(COMPONENT), counter.subscribed());
+	}
+
+	@Test
+	public void subscribeAllDoesNotCountFailedTransition() {
+		CompletableFuture<Void> transition = new CompletableFuture<Void>();
+		transition.completeExceptionally(new IllegalStateException("enable failed"));
+
+		Map<String, Throwable> errors = counter.subscribeAll(components(COMPONENT), enable(transition), disable(),
+				TIMEOUT);
+
+		assertEquals("enable failed", errors.get(KEY).getMessage());
+		assertEquals(0, counter.count(KEY));
+		assertFalse(counter.isAnySubscribed());
+	}
+
+	@Test
+	public void orphanedTransitionIsUndoneWhenItSucceedsAfterTheTimeout() {
+		CompletableFuture<Void> transition = new CompletableFuture<Void>();
+
+		Map<String, Throwable> errors = counter.subscribeAll(components(COMPONENT), enable(transition), disable(),
+				TIMEOUT);
+
+		assertTrue(errors.get(KEY) instanceof TimeoutException);
+		assertFalse(counter.isAnySubscribed());
+
+		transition.complete(null);
+
+		assertEquals(1, disabled.get());
+		assertEquals(0, counter.count(KEY));
+		assertFalse(counter.isAnySubscribed());
+	}
+
+	@Test
+	public void orphanedTransitionIsCountedWithoutUndo() throws Exception {
+		CompletableFuture<Void> transition = new CompletableFuture<Void>();
+
+		Map<String, Throwable> errors = counter.subscribeAll(components(COMPONENT), enable(transition), null,
+				TIMEOUT);
+
+		assertTrue(errors.get(KEY) instanceof TimeoutException);
+
+		transition.complete(null);
+
+		assertEquals(1, counter.count(KEY));
+		assertTrue(counter.isAnySubscribed());
+		assertTrue(counter.unsubscribe(KEY, () -> disabled.incrementAndGet()));
+		assertEquals(1, disabled.get());
+		assertFalse(counter.isAnySubscribed());
+	}
+
+	@Test
+	public void orphanedTransitionThatFailsIsNotUndone() {
+		CompletableFuture<Void> transition = new CompletableFuture<Void>();
+
+		counter.subscribeAll(components(COMPONENT), enable(transition), disable(), TIMEOUT);
+		transition.completeExceptionally(new IllegalStateException("enable failed"));
+
+		assertEquals(0, disabled.get());
+		assertEquals(0, counter.count(KEY));
+		assertFalse(counter.isAnySubscribed());
+	}
+
+	@Test
+	public void subscribeJoinsTheTransitionOfSubscribeAll() throws Exception {
+		CompletableFuture<Void> transition = new CompletableFuture<Void>();
+		Future<Map<String, Throwable>> bulk = executor
+				.submit(() -> counter.subscribeAll(components(COMPONENT), enable(transition), disable(), 5000));
+		while (enabled.get() == 0) {
+			Thread.sleep(5);
+		}
+		Future<?> single = executor.submit(() -> {
+			counter.subscribe(KEY, COMPONENT, () -> enabled.incrementAndGet());
+			return null;
+		});
+		Thread.sleep(50);
+		assertFalse(single.isDone());
+
+		transition.complete(null);
+
+		assertTrue(bulk.get(1, TimeUnit.SECONDS).isEmpty());
+		assertNull(single.get(1, TimeUnit.SECONDS));
+		assertEquals(1, enabled.get());
+		assertEquals(2, counter.count(KEY));
+		assertEquals(0, disabled.get());
+	}
+
+	@Test
+	public void unsubscribeAllRunsTheLastTransitionOnce() throws Exception {
+		counter.subscribe(KEY, COMPONENT, () -> enabled.incrementAndGet());
+		counter.subscribe(KEY, COMPONENT, () -> enabled.incrementAndGet());
+
+		Map<String, Throwable> errors = counter.unsubscribeAll(components(COMPONENT, COMPONENT), disable(),
+				TIMEOUT);
+
+		assertTrue(errors.isEmpty());
+		assertEquals(1, enabled.get());
+		assertEquals(1, disabled.get());
+		assertEquals(0, counter.count(KEY));
+		assertFalse(counter.isAnySubscribed());
+	}
+}
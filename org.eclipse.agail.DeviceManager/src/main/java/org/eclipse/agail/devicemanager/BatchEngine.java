@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.devicemanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.eclipse.agail.api.object.BatchResultObject;
+import org.eclipse.agail.object.DeviceDefinition;
+
+/**
+ * Runs the items of device batches with bounded parallelism, so that a batch
+ * of many devices is limited by the radio rather than by one round trip per
+ * device, and without one thread per device.
+ *
+ * The number of items processed at once, shared by all the batches, can be
+ * tuned with the system property {@code agile.devicemanager.batch.threads}.
+ */
+public class BatchEngine {
+
+	/**
+	 * Number of batch items processed in parallel
+	 */
+	private static final int THREADS = Integer.getInteger("agile.devicemanager.batch.threads", 8);
+
+	/**
+	 * Applies the operation of a batch to one item
+	 */
+	public interface Operation<T> {
+
+		/**
+		 * @param item
+		 * @return the device the item applied to
+		 * @throws Exception
+		 *             if the operation failed for this item
+		 */
+		DeviceDefinition apply(T item) throws Exception;
+	}
+
+	/**
+	 * Receives the result of each item as soon as it is done, from the thread
+	 * that ran the item
+	 */
+	public interface Listener {
+
+		void onResult(BatchResultObject result);
+	}
+
+	private final ThreadPoolExecutor executor;
+
+	public BatchEngine() {
+		AtomicInteger counter = new AtomicInteger();
+		executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				r -> {
+					Thread thread = new Thread(r, "device-batch-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Submits the items of a batch without waiting for them
+	 * 
+	 * @param batchID
+	 *            id of the batch chosen by the caller
+	 * @param operation
+	 *            name of the operation, reported in the results
+	 * @param items
+	 * @param deviceIdOf
+	 *            id reported for an item whose operation failed
+	 * @param op
+	 * @param listener
+	 * @return a future completed with the result of each item, in the order of
+	 *         the items, once they are all done
+	 */
+	public <T> CompletableFuture<List<BatchResultObject>> submit(String batchID, String operation, List<T> items,
+			Function<T, String> deviceIdOf, Operation<T> op, Listener listener) {
+		List<CompletableFuture<BatchResultObject>> futures = new ArrayList<CompletableFuture<BatchResultObject>>(
+				items.size());
+		for (int i = 0; i < items.size(); i++) {
+			final int index = i;
+			final T item = items.get(i);
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				BatchResultObject result = apply(batchID, operation, index, item, deviceIdOf, op);
+				listener.onResult(result);
+				return result;
+			}, executor));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(done -> {
+			List<BatchResultObject> results = new ArrayList<BatchResultObject>(futures.size());
+			for (CompletableFuture<BatchResultObject> future : futures) {
+				results.add(future.join());
+			}
+			return results;
+		});
+	}
+
+	private static <T> BatchResultObject apply(String batchID, String operation, int index, T item,
+			Function<T, String> deviceIdOf, Operation<T> op) {
+		try {
+			DeviceDefinition definition = op.apply(item);
+			return new BatchResultObject(batchID, index, operation, definition.deviceId, true, "", definition);
+		} catch (Exception e) {
+			return failure(batchID, operation, index, deviceIdOf.apply(item), e);
+		}
+	}
+
+	private static BatchResultObject failure(String batchID, String operation, int index, String deviceID,
+			Throwable error) {
+		String message = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+		return new BatchResultObject(batchID, index, operation, deviceID == null ? "" : deviceID, false, message,
+				BatchResultObject.NO_DEFINITION);
+	}
+}
@@ -12,29 +12,47 @@
  ******************************************************************************/
 package org.eclipse.agail.devicemanager;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.agail.Device;
 import org.eclipse.agail.DeviceFactory;
 import org.eclipse.agail.DeviceManager;
+import org.eclipse.agail.api.DeviceManagerExtension;
+import org.eclipse.agail.api.object.BatchResultObject;
+import org.eclipse.agail.api.object.DeviceQueryObject;
+import org.eclipse.agail.api.object.RegisterItemObject;
 import org.eclipse.agail.devicemanager.jsondb.DeviceWithType;
 import org.eclipse.agail.devicemanager.jsondb.JsonDB;
 import org.eclipse.agail.exception.AgileDeviceNotFoundException;
+import org.eclipse.agail.exception.AgileNoResultException;
 import org.eclipse.agail.object.AbstractAgileObject;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
+import org.eclipse.agail.object.DeviceStatusType;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * @author dagi
  *
  *         Agile Device manager implementation
  *
  */
-public class DeviceManagerImp extends AbstractAgileObject implements DeviceManager {
+public class DeviceManagerImp extends AbstractAgileObject implements DeviceManager, DeviceManagerExtension {
 
 	protected final Logger logger = LoggerFactory.getLogger(DeviceManagerImp.class);
 
@@ -47,34 +65,112 @@ public class DeviceManagerImp extends AbstractAgileObject implements DeviceManag
 	 */
 	private static final String AGILE_DEVICEMANAGER_MANAGER_BUS_PATH = "/org/eclipse/agail/DeviceManager";
 
+	private static final String REGISTER = "register";
+
 	/**
 	 * registered devices
 	 */
-	protected final List<DeviceDefinition> devices = new ArrayList<DeviceDefinition>();
+	protected final DeviceRegistry devices = new DeviceRegistry();
+
+	/**
+	 * Devices of the database not registered yet, e.g. because the
+	 * DeviceFactory was not running when they were loaded. Only used by the
+	 * {@link #loader} thread.
+	 */
+	private final List<DeviceWithType> unregisteredDevices = new ArrayList<DeviceWithType>();
+
+	private boolean loaded = false;
+
+	/**
+	 * Time in milliseconds between the attempts to register the devices of
+	 * the database whose registration failed at startup
+	 */
+	private static final long LOAD_RETRY = Long.getLong("agile.devicemanager.load.retry", 5000);
+
+	private final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "device-loader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Maximum number of devices connected at once after their registration
+	 */
+	private static final int CONNECT_THREADS = Integer.getInteger("agile.devicemanager.connect.threads", 4);
+
+	private final ExecutorService connector = Executors.newFixedThreadPool(CONNECT_THREADS, r -> {
+		Thread thread = new Thread(r, "device-connect");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	private JsonDB db;
 
+	/**
+	 * Runs the items of the batches, see {@link #RegisterAll(String, List)}
+	 * and {@link #RunBatch(String, String, List)}
+	 */
+	private final BatchEngine batches = new BatchEngine();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
 	public static void main(String[] args) throws DBusException {
 		DeviceManager deviceManager = new DeviceManagerImp();
 	}
 
 	public DeviceManagerImp() throws DBusException {
 
+		db = new JsonDB();
+
 		dbusConnect(AGILE_DEVICEMANAGER_MANAGER_BUS_NAME, AGILE_DEVICEMANAGER_MANAGER_BUS_PATH, this);
 		logger.debug("Started Device Manager");
 
-		db = new JsonDB();
+		loader.execute(this::loadAtStartup);
 	}
 
 	/**
-	 *
+	 * Registers the devices of the database, retrying every
+	 * {@link #LOAD_RETRY} milliseconds until they are all registered, e.g.
+	 * once the DeviceFactory is running. The D-Bus methods only read the
+	 * registry, so they never wait for the DeviceFactory.
+	 */
+	private void loadAtStartup() {
+		boolean done = false;
+		try {
+			done = loadDevices();
+		} catch (RuntimeException e) {
+			logger.error("Can not load the devices of the database: {}", e.getMessage());
+		}
+		if (!done) {
+			loader.schedule(this::loadAtStartup, LOAD_RETRY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * The method of the DeviceManager interface takes no query, it returns
+	 * all the devices as a JSON array. Searches are served by
+	 * {@link #Find(DeviceQueryObject)}.
 	 *
 	 * @see org.eclipse.agail.protocol.ble.devicemanager.DeviceManager#Find()
 	 */
 	@Override
 	public String Find() {
-		// TODO
-		return null;
+		List<DeviceDefinition> all = Find(new DeviceQueryObject("", "", "", "", "", "", "", false, 0));
+		try {
+			return mapper.writeValueAsString(all);
+		} catch (JsonProcessingException e) {
+			throw new AgileNoResultException("Can not serialize the devices: " + e.getMessage());
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @see org.eclipse.agail.api.DeviceManagerExtension#Find(org.eclipse.agail.api.object.DeviceQueryObject)
+	 */
+	@Override
+	public List<DeviceDefinition> Find(DeviceQueryObject query) {
+		return devices.find(query);
 	}
 
 	@Override
@@ -97,49 +193,129 @@ public class DeviceManagerImp extends AbstractAgileObject implements DeviceManag
 
 	@Override
 	public DeviceDefinition Register(DeviceOverview deviceOverview, String deviceType) {
-		Device device = getDevice(deviceOverview);
-		DeviceDefinition registeredDev = null;
-		if (device != null) {
-			registeredDev = device.Definition();
-			logger.info("Device already registered:  {}", device.Id());
-		} else {
+		Registration registration = null;
+		try {
+			List<DeviceWithType> created = new ArrayList<DeviceWithType>();
+			Registration registered = register(deviceOverview, deviceType, created);
 			try {
-				logger.info("HEXIWEAR - Checking device type: " + deviceType + " and overview " + deviceOverview);
-
-				String objectName = "org.eclipse.agail.DeviceFactory";
-				String objectPath = "/org/eclipse/agail/DeviceFactory";
-				logger.info("Connection established: " + connection);
-				DeviceFactory factory = (DeviceFactory) connection.getRemoteObject(objectName, objectPath,
-						DeviceFactory.class);
-				device = factory.getDevice(deviceType, deviceOverview);
-				logger.info("Creating new device: {}", deviceType);
-				if (device != null) {
-					registeredDev = device.Definition();
-					db.saveDevice(deviceOverview, deviceType);
-					devices.add(registeredDev);
-					logger.info("Created new device: {}", devices);
-				}
-			} catch (Exception e) {
-				logger.error("Can not register device: {}", e.getMessage());
-				e.printStackTrace();
+				db.saveDevices(created);
+			} catch (RuntimeException e) {
+				forget(Collections.singletonList(registered));
+				throw e;
 			}
+			registration = registered;
+		} catch (Exception e) {
+			logger.error("Can not register device: {}", e.getMessage());
+			e.printStackTrace();
 		}
 		// connect device
+		if (registration != null) {
+			final Registration reg = registration;
+			connector.execute(() -> connect(reg));
+			return registration.definition;
+		}
+		return null;
+	}
+
+	/**
+	 * A device registered in memory
+	 */
+	private static class Registration {
+
+		final Device device;
+
+		final DeviceDefinition definition;
+
+		/**
+		 * Whether the DeviceFactory created the device for this registration
+		 */
+		final boolean created;
+
+		Registration(Device device, DeviceDefinition definition, boolean created) {
+			this.device = device;
+			this.definition = definition;
+			this.created = created;
+		}
+	}
+
+	/**
+	 * Unregisters and stops the devices created by registrations that could
+	 * not be stored, so that no device is listed without being persisted
+	 */
+	private void forget(List<Registration> registrations) {
+		for (Registration registration : registrations) {
+			if (registration == null || !registration.created) {
+				continue;
+			}
+			devices.remove(registration.definition.deviceId);
+			try {
+				registration.device.Stop();
+			} catch (Exception e) {
+				logger.error("Can not stop device {}: {}", registration.definition.deviceId, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Registers the device without storing it, the devices created by the
+	 * DeviceFactory are added to {@code created} so that the caller can store
+	 * them
+	 *
+	 * @return the registered device, null if the DeviceFactory did not create
+	 *         it
+	 */
+	private Registration register(DeviceOverview deviceOverview, String deviceType, List<DeviceWithType> created)
+			throws Exception {
+		Device device = getDevice(deviceOverview);
 		if (device != null) {
-			final Device dev = device;
-			new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						dev.Connect();
-						logger.info("Device connected");
-					} catch (Exception e) {
-						logger.error("Error encountered while attempting to connect: {}", e.getMessage());
-					}
-				}
-			}).start();
+			DeviceDefinition registeredDev = getRegistered(deviceOverview);
+			if (registeredDev == null) {
+				registeredDev = device.Definition();
+				devices.put(registeredDev, deviceType);
+			}
+			logger.info("Device already registered:  {}", registeredDev.deviceId);
+			return new Registration(device, registeredDev, false);
+		}
+		logger.info("HEXIWEAR - Checking device type: " + deviceType + " and overview " + deviceOverview);
+
+		String objectName = "org.eclipse.agail.DeviceFactory";
+		String objectPath = "/org/eclipse/agail/DeviceFactory";
+		logger.info("Connection established: " + connection);
+		DeviceFactory factory = (DeviceFactory) connection.getRemoteObject(objectName, objectPath,
+				DeviceFactory.class);
+		device = factory.getDevice(deviceType, deviceOverview);
+		logger.info("Creating new device: {}", deviceType);
+		if (device == null) {
+			return null;
 		}
-		return registeredDev;
+		DeviceDefinition registeredDev = device.Definition();
+		created.add(new DeviceWithType(deviceType, deviceOverview));
+		devices.put(registeredDev, deviceType);
+		logger.info("Created new device: {}", registeredDev.deviceId);
+		return new Registration(device, registeredDev, true);
+	}
+
+	/**
+	 * Connects a registered device, a failure is only logged since the device
+	 * stays registered
+	 */
+	private void connect(Registration registration) {
+		try {
+			connect(registration.device, registration.definition.deviceId);
+			logger.info("Device connected");
+		} catch (Exception e) {
+			logger.error("Error encountered while attempting to connect: {}", e.getMessage());
+		}
+	}
+
+	private void connect(Device device, String id) throws DBusException {
+		try {
+			device.Connect();
+		} catch (DBusException | RuntimeException e) {
+			setStatus(id, DeviceStatusType.DISCONNECTED);
+			throw e;
+		}
+		setStatus(id, DeviceStatusType.CONNECTED);
 	}
 
 	/**
@@ -150,12 +326,11 @@ public class DeviceManagerImp extends AbstractAgileObject implements DeviceManag
 	 */
 	@Override
 	public DeviceDefinition Read(String id) {
-		for (DeviceDefinition dd : devices) {
-			if (dd.deviceId.trim().equals(id)) {
-				return dd;
-			}
+		DeviceDefinition dd = devices.get(id);
+		if (dd == null) {
+			throw new AgileDeviceNotFoundException("Device not found");
 		}
-		throw new AgileDeviceNotFoundException("Device not found");
+		return dd;
 	}
 
 	/**
@@ -176,16 +351,55 @@ public class DeviceManagerImp extends AbstractAgileObject implements DeviceManag
 	 */
 	@Override
 	public List<DeviceDefinition> Devices() {
-		List<DeviceWithType> devs = db.readData();
-		logger.info("******************** Devices {} fround in jsonDB.", devs.size());
-		for (int i = 0; i < devs.size(); i++) {
-			DeviceWithType dev = devs.get(i);
-			Register(dev.getDeviceOverview(), dev.getDeviceType());
-			// logger.info("Devices (id= {}, name= {}) with type ({}) fround in jsonDB.",
-			// dev.getDeviceOverview().id, dev.getDeviceOverview().name,
-			// dev.getDeviceType());
+		return devices.snapshot();
+	}
+
+	/**
+	 * Registers the devices of the database the first time it is called, then
+	 * retries only the ones whose registration failed. The devices are
+	 * already stored, they are only registered and connected.
+	 *
+	 * @return true once all the devices of the database are registered
+	 */
+	private boolean loadDevices() {
+		if (!loaded) {
+			List<DeviceWithType> devs = db.readData();
+			logger.info("Devices {} found in jsonDB.", devs.size());
+			unregisteredDevices.addAll(devs);
+			loaded = true;
 		}
-		return devices;
+		for (Iterator<DeviceWithType> it = unregisteredDevices.iterator(); it.hasNext();) {
+			DeviceWithType dev = it.next();
+			try {
+				Registration registration = register(dev.getDeviceOverview(), dev.getDeviceType(),
+						new ArrayList<DeviceWithType>());
+				if (registration != null) {
+					it.remove();
+					connector.execute(() -> connect(registration));
+				}
+			} catch (Exception e) {
+				logger.error("Can not register device {}: {}", dev.getDeviceOverview().getId(), e.getMessage());
+			}
+		}
+		return unregisteredDevices.isEmpty();
+	}
+
+	private void setStatus(String id, DeviceStatusType status) {
+		if (id != null) {
+			devices.setStatus(id, status.toString());
+		}
+	}
+
+	/**
+	 * Looks up the registered device of the overview by address
+	 */
+	private DeviceDefinition getRegistered(DeviceOverview deviceOverview) {
+		for (DeviceDefinition dd : devices.getByAddress(deviceOverview.id)) {
+			if (deviceOverview.getProtocol().equals(dd.getProtocol())) {
+				return dd;
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -204,7 +418,7 @@ public class DeviceManagerImp extends AbstractAgileObject implements DeviceManag
 			if (device != null) {
 				try {
 					device.Stop();
-					devices.remove(devDefn);
+					devices.remove(devDefn.deviceId);
 					db.deletDevice(devDefn.getAddress());
 					logger.info("Device deleted: {}", id);
 				} catch (Exception e) {
@@ -216,14 +430,164 @@ public class DeviceManagerImp extends AbstractAgileObject implements DeviceManag
 	}
 
 	/**
-	 *
+	 * Starts a batch, the outcome of each item is sent as a BatchResultSignal
+	 * and the end of the batch as a BatchCompletedSignal. The arguments are a JSON object with the
+	 * {@code batchID} sent back with the results and either the {@code ids} of
+	 * the devices or, to register devices, their {@code devices} as stored in
+	 * the database ({@code deviceType} and {@code deviceOverview}).
 	 *
 	 * @see org.eclipse.agail.protocol.ble.devicemanager.DeviceManager#Batch(java.lang.
 	 *      String, java.lang.String)
 	 */
 	@Override
 	public void Batch(String operation, String arguments) {
-		logger.debug("DeviceManager.Batch not implemented");
+		final String batchID;
+		final List<String> ids;
+		final List<RegisterItemObject> items;
+		try {
+			JsonNode args = mapper.readTree(arguments);
+			batchID = args.path("batchID").asText();
+			ids = mapper.convertValue(args.path("ids"), new TypeReference<List<String>>() {
+			});
+			items = new ArrayList<RegisterItemObject>();
+			List<DeviceWithType> devs = mapper.convertValue(args.path("devices"),
+					new TypeReference<List<DeviceWithType>>() {
+					});
+			if (devs != null) {
+				for (DeviceWithType dev : devs) {
+					items.add(new RegisterItemObject(dev.getDeviceOverview(), dev.getDeviceType()));
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			throw new AgileNoResultException("Invalid batch arguments: " + e.getMessage());
+		}
+		if (REGISTER.equals(operation)) {
+			RegisterAll(batchID, items);
+		} else {
+			RunBatch(batchID, operation, ids == null ? new ArrayList<String>() : ids);
+		}
+	}
+
+	/**
+	 *
+	 *
+	 * @see org.eclipse.agail.api.DeviceManagerExtension#RegisterAll(java.lang.String,
+	 *      java.util.List)
+	 */
+	@Override
+	public void RegisterAll(String batchID, List<RegisterItemObject> items) {
+		List<DeviceWithType> created = Collections.synchronizedList(new ArrayList<DeviceWithType>());
+		List<Registration> registrations = Collections.synchronizedList(new ArrayList<Registration>());
+		batches.submit(batchID, REGISTER, items, item -> item.overview.id, item -> {
+			Registration registration = register(item.overview, item.deviceType, created);
+			if (registration == null) {
+				throw new AgileNoResultException("Can not create device of type " + item.deviceType);
+			}
+			registrations.add(registration);
+			connect(registration);
+			return registration.definition;
+		}, this::sendBatchResult).whenComplete((results, error) -> complete(batchID, error, () -> {
+			try {
+				db.saveDevices(created);
+			} catch (RuntimeException e) {
+				forget(registrations);
+				throw e;
+			}
+		}));
+	}
+
+	/**
+	 *
+	 *
+	 * @see org.eclipse.agail.api.DeviceManagerExtension#RunBatch(java.lang.String,
+	 *      java.lang.String, java.util.List)
+	 */
+	@Override
+	public void RunBatch(String batchID, String operation, List<String> deviceIDs) {
+		List<String> deleted = Collections.synchronizedList(new ArrayList<String>());
+		batches.submit(batchID, operation, deviceIDs, id -> id, batchOperation(operation, deleted),
+				this::sendBatchResult).whenComplete((results, error) -> complete(batchID, error, () -> {
+					if (!deleted.isEmpty()) {
+						db.deleteDevices(deleted);
+					}
+				}));
+	}
+
+	/**
+	 * Stores the changes of a finished batch and sends its
+	 * BatchCompletedSignal
+	 */
+	private void complete(String batchID, Throwable error, Runnable store) {
+		String message = "";
+		try {
+			store.run();
+		} catch (RuntimeException e) {
+			logger.error("Can not store the changes of batch {}: {}", batchID, e.getMessage());
+			message = "Can not store the changes of the batch: " + e.getMessage();
+		}
+		if (error != null) {
+			logger.error("Batch {} failed: {}", batchID, error.getMessage());
+			message = "Batch failed: " + error.getMessage();
+		}
+		try {
+			connection.sendSignal(new DeviceManagerExtension.BatchCompletedSignal(
+					AGILE_DEVICEMANAGER_MANAGER_BUS_PATH, batchID, message));
+		} catch (DBusException e) {
+			logger.error("Can not send the end of batch {}: {}", batchID, e.getMessage());
+		}
+	}
+
+	/**
+	 * @param deleted
+	 *            receives the addresses of the deleted devices, to remove them
+	 *            from the database at once
+	 */
+	private BatchEngine.Operation<String> batchOperation(String operation, List<String> deleted) {
+		switch (operation) {
+		case "delete":
+			return id -> {
+				DeviceDefinition devDefn = Read(id);
+				getRegisteredDevice(devDefn).Stop();
+				devices.remove(devDefn.deviceId);
+				deleted.add(devDefn.getAddress());
+				logger.info("Device deleted: {}", id);
+				return devDefn;
+			};
+		case "connect":
+			return id -> {
+				DeviceDefinition devDefn = Read(id);
+				connect(getRegisteredDevice(devDefn), devDefn.deviceId);
+				return devDefn;
+			};
+		case "disconnect":
+			return id -> {
+				DeviceDefinition devDefn = Read(id);
+				getRegisteredDevice(devDefn).Disconnect();
+				setStatus(devDefn.deviceId, DeviceStatusType.DISCONNECTED);
+				return devDefn;
+			};
+		case "read":
+			return this::Read;
+		default:
+			throw new AgileNoResultException("Unknown batch operation: " + operation);
+		}
+	}
+
+	private Device getRegisteredDevice(DeviceDefinition devDefn) {
+		Device device = getDevice(devDefn);
+		if (device == null) {
+			throw new AgileDeviceNotFoundException("Device not found");
+		}
+		return device;
+	}
+
+	private void sendBatchResult(BatchResultObject result) {
+		try {
+			connection.sendSignal(
+					new DeviceManagerExtension.BatchResultSignal(AGILE_DEVICEMANAGER_MANAGER_BUS_PATH, result));
+		} catch (DBusException e) {
+			logger.error("Can not send batch result: {}", e.getMessage());
+		}
 	}
 
 	/**
@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.devicemanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.eclipse.agail.api.object.DeviceQueryObject;
+import org.eclipse.agail.exception.AgileNoResultException;
+import org.eclipse.agail.object.DeviceDefinition;
+
+/**
+ * In-memory registry of the devices known to the device manager, keyed by
+ * device id with sorted secondary indexes on every searchable field, see
+ * {@link #find(DeviceQueryObject)}.
+ *
+ * Lookups are lock free. Updates are serialized and publish a new immutable
+ * snapshot of the device list, in registration order, so that listing the
+ * devices does not copy them.
+ */
+public class DeviceRegistry {
+
+	/**
+	 * Searchable fields of a registered device, in decreasing order of
+	 * expected selectivity
+	 */
+	public enum Field {
+		ID, ADDRESS, NAME, TYPE, PROTOCOL, STATUS;
+
+		String valueOf(Entry entry) {
+			switch (this) {
+			case ID:
+				return entry.definition.deviceId;
+			case ADDRESS:
+				return entry.definition.address;
+			case NAME:
+				return entry.definition.name;
+			case TYPE:
+				return entry.deviceType;
+			case PROTOCOL:
+				return entry.definition.protocol;
+			default:
+				return entry.status;
+			}
+		}
+
+		static Field parse(String name) {
+			try {
+				return Field.valueOf(name.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new AgileNoResultException("Unknown device field: " + name);
+			}
+		}
+	}
+
+	/**
+	 * A registered device, the type it was created with and the connection
+	 * status last observed by the device manager
+	 */
+	public static class Entry {
+
+		public final DeviceDefinition definition;
+
+		public final String deviceType;
+
+		public final String status;
+
+		Entry(DeviceDefinition definition, String deviceType, String status) {
+			this.definition = definition;
+			this.deviceType = deviceType;
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Equality or prefix condition on a field
+	 */
+	private static class Filter {
+
+		final Field field;
+
+		final String value;
+
+		final boolean prefix;
+
+		Filter(Field field, String filter) {
+			this.field = field;
+			this.prefix = filter.endsWith("*");
+			this.value = prefix ? filter.substring(0, filter.length() - 1) : filter;
+		}
+
+		boolean matches(Entry entry) {
+			String actual = field.valueOf(entry);
+			return actual != null && (prefix ? actual.startsWith(value) : actual.equals(value));
+		}
+	}
+
+	private final Map<String, Entry> byId = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Ids of the devices by field value, sorted so that prefix filters are
+	 * range scans
+	 */
+	private final Map<Field, ConcurrentSkipListMap<String, Set<String>>> indexes = new EnumMap<Field, ConcurrentSkipListMap<String, Set<String>>>(
+			Field.class);
+
+	private volatile List<DeviceDefinition> snapshot = Collections.emptyList();
+
+	public DeviceRegistry() {
+		for (Field field : Field.values()) {
+			indexes.put(field, new ConcurrentSkipListMap<String, Set<String>>());
+		}
+	}
+
+	/**
+	 * Adds a device, replacing the one with the same id
+	 * 
+	 * @param definition
+	 * @param deviceType
+	 */
+	public synchronized void put(DeviceDefinition definition, String deviceType) {
+		String id = definition.deviceId.trim();
+		Entry previous = byId.get(id);
+		replace(id, previous, new Entry(definition, deviceType, previous == null ? null : previous.status));
+		List<DeviceDefinition> devices = new ArrayList<DeviceDefinition>(snapshot);
+		int position = previous == null ? -1 : devices.indexOf(previous.definition);
+		if (position < 0) {
+			devices.add(definition);
+		} else {
+			devices.set(position, definition);
+		}
+		snapshot = Collections.unmodifiableList(devices);
+	}
+
+	/**
+	 * Records the connection status of a device
+	 * 
+	 * @param id
+	 * @param status
+	 *            see {@link org.eclipse.agail.object.DeviceStatusType}
+	 */
+	public synchronized void setStatus(String id, String status) {
+		Entry previous = byId.get(id.trim());
+		if (previous != null) {
+			replace(id.trim(), previous, new Entry(previous.definition, previous.deviceType, status));
+		}
+	}
+
+	/**
+	 * Removes a device
+	 * 
+	 * @param id
+	 * @return the removed device, null if it was not registered
+	 */
+	public synchronized Entry remove(String id) {
+		Entry previous = byId.remove(id.trim());
+		if (previous != null) {
+			unindex(id.trim(), previous);
+			List<DeviceDefinition> devices = new ArrayList<DeviceDefinition>(snapshot);
+			devices.remove(previous.definition);
+			snapshot = Collections.unmodifiableList(devices);
+		}
+		return previous;
+	}
+
+	/**
+	 * @param id
+	 * @return the device with the id, null if it is not registered
+	 */
+	public DeviceDefinition get(String id) {
+		Entry entry = byId.get(id.trim());
+		return entry == null ? null : entry.definition;
+	}
+
+	/**
+	 * @param id
+	 * @return the entry of the device, null if it is not registered
+	 */
+	public Entry getEntry(String id) {
+		return byId.get(id.trim());
+	}
+
+	public List<DeviceDefinition> getByAddress(String address) {
+		return definitions(lookup(Field.ADDRESS, address));
+	}
+
+	public List<DeviceDefinition> getByProtocol(String protocol) {
+		return definitions(lookup(Field.PROTOCOL, protocol));
+	}
+
+	public List<DeviceDefinition> getByType(String deviceType) {
+		return definitions(lookup(Field.TYPE, deviceType));
+	}
+
+	/**
+	 * Searches the registered devices.
+	 * 
+	 * The candidates are read from the index of the most selective filter, the
+	 * smallest equality match or else the prefix filter on the most selective
+	 * field, and checked against the other filters. Devices are sorted by id
+	 * unless another field is requested.
+	 * 
+	 * @param query
+	 * @return the matching devices
+	 */
+	public List<DeviceDefinition> find(DeviceQueryObject query) {
+		List<Filter> filters = new ArrayList<Filter>();
+		addFilter(filters, Field.ID, query.id);
+		addFilter(filters, Field.ADDRESS, query.address);
+		addFilter(filters, Field.NAME, query.name);
+		addFilter(filters, Field.TYPE, query.type);
+		addFilter(filters, Field.PROTOCOL, query.protocol);
+		addFilter(filters, Field.STATUS, query.status);
+		Field sortBy = query.sortBy == null || query.sortBy.trim().isEmpty() ? Field.ID : Field.parse(query.sortBy);
+		int limit = query.limit > 0 ? query.limit : Integer.MAX_VALUE;
+
+		Filter driving = null;
+		Collection<String> candidates = null;
+		for (Filter filter : filters) {
+			if (!filter.prefix) {
+				Set<String> ids = lookup(filter.field, filter.value);
+				if (candidates == null || ids.size() < candidates.size()) {
+					driving = filter;
+					candidates = ids;
+				}
+			}
+		}
+		if (driving == null && !filters.isEmpty()) {
+			driving = filters.get(0);
+			candidates = lookupPrefix(driving.field, driving.value);
+		}
+
+		List<Entry> matches = new ArrayList<Entry>();
+		if (candidates == null) {
+			// no filter, the id index is already in the requested order
+			NavigableMap<String, Set<String>> ids = indexes.get(Field.ID);
+			if (sortBy == Field.ID) {
+				for (String id : (query.descending ? ids.descendingMap() : ids).keySet()) {
+					Entry entry = byId.get(id);
+					if (entry != null) {
+						matches.add(entry);
+					}
+					if (matches.size() >= limit) {
+						break;
+					}
+				}
+				return definitionsOf(matches);
+			}
+			candidates = byId.keySet();
+		}
+		for (String id : candidates) {
+			Entry entry = byId.get(id);
+			if (entry != null && matchesAll(entry, filters, driving)) {
+				matches.add(entry);
+			}
+		}
+		Comparator<Entry> order = Comparator.comparing((Entry entry) -> sortBy.valueOf(entry),
+				Comparator.nullsLast(Comparator.<String> naturalOrder()))
+				.thenComparing(entry -> entry.definition.deviceId);
+		Collections.sort(matches, query.descending ? order.reversed() : order);
+		return definitionsOf(matches.size() > limit ? matches.subList(0, limit) : matches);
+	}
+
+	/**
+	 * @return an immutable list of the registered devices
+	 */
+	public List<DeviceDefinition> snapshot() {
+		return snapshot;
+	}
+
+	public int size() {
+		return byId.size();
+	}
+
+	private static void addFilter(List<Filter> filters, Field field, String filter) {
+		if (filter != null && !filter.isEmpty() && !filter.equals("*")) {
+			filters.add(new Filter(field, filter));
+		}
+	}
+
+	private static boolean matchesAll(Entry entry, List<Filter> filters, Filter checked) {
+		for (Filter filter : filters) {
+			if (filter != checked && !filter.matches(entry)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Set<String> lookup(Field field, String key) {
+		Set<String> ids = key == null ? null : indexes.get(field).get(key);
+		return ids == null ? Collections.<String> emptySet() : ids;
+	}
+
+	private Collection<String> lookupPrefix(Field field, String prefix) {
+		List<String> ids = new ArrayList<String>();
+		for (Set<String> values : indexes.get(field).subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+				.values()) {
+			ids.addAll(values);
+		}
+		return ids;
+	}
+
+	private List<DeviceDefinition> definitions(Collection<String> ids) {
+		List<DeviceDefinition> devices = new ArrayList<DeviceDefinition>(ids.size());
+		for (String id : ids) {
+			Entry entry = byId.get(id);
+			if (entry != null) {
+				devices.add(entry.definition);
+			}
+		}
+		return devices;
+	}
+
+	private static List<DeviceDefinition> definitionsOf(List<Entry> entries) {
+		List<DeviceDefinition> devices = new ArrayList<DeviceDefinition>(entries.size());
+		for (Entry entry : entries) {
+			devices.add(entry.definition);
+		}
+		return devices;
+	}
+
+	private void replace(String id, Entry previous, Entry entry) {
+		if (previous != null) {
+			unindex(id, previous);
+		}
+		byId.put(id, entry);
+		for (Field field : Field.values()) {
+			index(indexes.get(field), field == Field.ID ? id : field.valueOf(entry), id);
+		}
+	}
+
+	private void unindex(String id, Entry entry) {
+		for (Field field : Field.values()) {
+			unindex(indexes.get(field), field == Field.ID ? id : field.valueOf(entry), id);
+		}
+	}
+
+	private static void index(Map<String, Set<String>> index, String key, String id) {
+		if (key != null) {
+			index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+		}
+	}
+
+	private static void unindex(Map<String, Set<String>> index, String key, String id) {
+		if (key == null) {
+			return;
+		}
+		Set<String> ids = index.get(key);
+		if (ids != null) {
+			ids.remove(id);
+			if (ids.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package org.eclipse.agail.devicemanager.jsondb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Append-only file of newline separated records.
+ *
+ * Appends are serialized and {@link #sync(long)} uses group commit: callers
+ * waiting for their records to be on disk share a single fsync covering all
+ * the records appended so far.
+ */
+public class Journal {
+
+	private static final byte NEWLINE = '\n';
+
+	private final File file;
+
+	private final Object syncLock = new Object();
+
+	private FileChannel channel;
+
+	/**
+	 * Sequence number of the last append, guarded by this
+	 */
+	private long appended;
+
+	/**
+	 * Sequence number of the last append known to be on disk
+	 */
+	private volatile long synced;
+
+	public Journal(File file) throws IOException {
+		this.file = file;
+		open();
+	}
+
+	/**
+	 * Appends records, each one on its own line
+	 * 
+	 * @param records
+	 *            serialized records, without newline
+	 * @return the sequence number to pass to {@link #sync(long)}
+	 * @throws IOException
+	 */
+	public synchronized long append(List<byte[]> records) throws IOException {
+		for (byte[] record : records) {
+			ByteBuffer buffer = ByteBuffer.allocate(record.length + 1);
+			buffer.put(record).put(NEWLINE).flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		return ++appended;
+	}
+
+	/**
+	 * Waits until the append with the given sequence number is on disk
+	 * 
+	 * @param sequence
+	 * @throws IOException
+	 */
+	public void sync(long sequence) throws IOException {
+		if (synced >= sequence) {
+			return;
+		}
+		synchronized (syncLock) {
+			if (synced >= sequence) {
+				return;
+			}
+			long target;
+			FileChannel current;
+			synchronized (this) {
+				target = appended;
+				current = channel;
+			}
+			current.force(false);
+			synced = target;
+		}
+	}
+
+	/**
+	 * @return the size of the journal in bytes
+	 * @throws IOException
+	 */
+	public synchronized long size() throws IOException {
+		return channel.size();
+	}
+
+	/**
+	 * Moves the records appended so far to another file and starts an empty
+	 * journal
+	 * 
+	 * @param target
+	 * @throws IOException
+	 */
+	public void rotate(File target) throws IOException {
+		synchronized (syncLock) {
+			synchronized (this) {
+				channel.force(false);
+				synced = appended;
+				channel.close();
+				Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				open();
+				syncDirectory(file);
+			}
+		}
+	}
+
+	/**
+	 * Makes the renames and creations of files in the directory of the given
+	 * file durable
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	static void syncDirectory(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		try (FileChannel dir = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			dir.force(true);
+		}
+	}
+
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Opens the journal for append, terminating a record torn by a crash so
+	 * that it does not swallow the next one
+	 */
+	private void open() throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.READ);
+		long size = channel.size();
+		if (size > 0) {
+			ByteBuffer last = ByteBuffer.allocate(1);
+			channel.read(last, size - 1);
+			if (last.get(0) != NEWLINE) {
+				channel.write(ByteBuffer.wrap(new byte[] { NEWLINE }), size);
+			}
+		}
+		channel.position(channel.size());
+	}
+}
@@ -0,0 +1,48 @@
+package org.eclipse.agail.devicemanager.jsondb;
+
+/**
+ * A mutation of the device database, as written to the journal
+ */
+public class JournalRecord {
+
+	public static final String PUT = "put";
+
+	public static final String DELETE = "delete";
+
+	String op;
+	String id;
+	DeviceWithType device;
+
+	public JournalRecord() {
+	}
+
+	public JournalRecord(String op, String id, DeviceWithType device) {
+		this.op = op;
+		this.id = id;
+		this.device = device;
+	}
+
+	public String getOp() {
+		return op;
+	}
+
+	public void setOp(String op) {
+		this.op = op;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public DeviceWithType getDevice() {
+		return device;
+	}
+
+	public void setDevice(DeviceWithType device) {
+		this.device = device;
+	}
+}
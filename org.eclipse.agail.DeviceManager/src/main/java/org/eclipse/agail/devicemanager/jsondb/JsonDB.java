@@ -1,32 +1,118 @@
 package org.eclipse.agail.devicemanager.jsondb;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.agail.object.DeviceOverview;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.JsonParser.Feature;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Device database made of a snapshot, the JSON array of the devices, and of a
+ * {@link Journal} of the changes made since the snapshot was written.
+ *
+ * The devices are loaded at startup by replaying the journal over the
+ * snapshot, then read from memory only. A change updates the memory, appends
+ * a record to the journal and waits for it to be on disk, concurrent changes
+ * share the same fsync. A change that can not be written is undone in memory
+ * and fails with an {@link UncheckedIOException}. Once the journal grows over
+ * {@code agile.devicemanager.db.journal.size} bytes it is folded into a new
+ * snapshot in the background.
+ */
 public class JsonDB {
 
 	protected final Logger logger = LoggerFactory.getLogger(JsonDB.class);
 
+	/**
+	 * Size in bytes of the journal above which it is compacted
+	 */
+	private static final long JOURNAL_MAX_SIZE = Long.getLong("agile.devicemanager.db.journal.size", 256 * 1024L);
+
 	private String dbFileName = "/devicesdb.json";
 	private File dbFile;
 
+	private File journalFile;
+
+	/**
+	 * Journal being folded into the snapshot
+	 */
+	private File compactingFile;
+
+	private Journal journal;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private static final TypeReference<List<DeviceWithType>> SNAPSHOT_TYPE = new TypeReference<List<DeviceWithType>>() {
+	};
+
+	private static final ObjectReader snapshotReader = mapper.readerFor(SNAPSHOT_TYPE);
+
+	private static final ObjectWriter snapshotWriter = mapper.writerFor(SNAPSHOT_TYPE);
+
+	private static final ObjectReader recordReader = mapper.readerFor(JournalRecord.class);
+
+	private static final ObjectWriter recordWriter = mapper.writerFor(JournalRecord.class);
+
+	/**
+	 * The stored devices by id, in insertion order, guarded by {@link #lock}
+	 */
+	private final Map<String, DeviceWithType> devices;
+
+	/**
+	 * Changes hold the write lock while they update {@link #devices} and
+	 * append to the journal, so that the journal has the order of the memory
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final AtomicBoolean compacting = new AtomicBoolean();
+
+	private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "jsondb-compaction");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public JsonDB() {
+		setFile();
+		try {
+			journal = new Journal(journalFile);
+		} catch (IOException e) {
+			logger.error("Can not open the journal {}", journalFile, e);
+		}
+		devices = load();
+		logger.info("Devices {} found in jsonDB.", devices.size());
+		try {
+			if (compactingFile.exists() || (journal != null && journal.size() > JOURNAL_MAX_SIZE)) {
+				scheduleCompaction();
+			}
+		} catch (IOException e) {
+			logger.error("Can not read the size of the journal {}", journalFile, e);
+		}
+	}
+
 	private void setFile() {
 		logger.debug("System.getenv(\"DBFILE\") {}", System.getenv("DBFILE"));
 		if(System.getenv("DBFILE") != null) {
@@ -35,6 +121,8 @@ public class JsonDB {
 		logger.debug("DBdevice File found {}", dbFileName);
 		if (dbFile == null) {
 			dbFile = new File(dbFileName);
+			journalFile = new File(dbFileName + ".journal");
+			compactingFile = new File(dbFileName + ".journal.compacting");
 			if (dbFile.exists()) {
 				logger.info("DB File {} found.", dbFileName);
 			}
@@ -42,168 +130,286 @@ public class JsonDB {
 	}
 
 	public void saveDevice(DeviceOverview dev, String type) {
+		saveDevices(Collections.singletonList(new DeviceWithType(type, dev)));
+	}
 
-		setFile();
-
-		boolean found = false;
-		List<DeviceWithType> devices = readData();
-		for (int i = 0; i < devices.size(); i++) {
-			if (devices.get(i).deviceOverview.getId().equals(dev.getId())) {
-				found = true;
+	/**
+	 * Adds the devices not stored yet with a single write of the journal
+	 */
+	public void saveDevices(List<DeviceWithType> newDevices) {
+		List<JournalRecord> records = new ArrayList<JournalRecord>();
+		Map<String, DeviceWithType> previous = Collections.emptyMap();
+		long sequence;
+		lock.writeLock().lock();
+		try {
+			for (DeviceWithType d : newDevices) {
+				if (devices.putIfAbsent(d.deviceOverview.getId(), d) == null) {
+					records.add(new JournalRecord(JournalRecord.PUT, d.deviceOverview.getId(), d));
+				}
 			}
+			sequence = append(records, previous);
+		} finally {
+			lock.writeLock().unlock();
 		}
-		if (!found) {
-			DeviceWithType d = new DeviceWithType(type, dev);
-			devices.add(d);
-		}
-
-		updateFile(devices);
+		sync(sequence, records, previous);
 	}
 
 	public List<DeviceWithType> readData() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<DeviceWithType>(devices.values());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 
-		setFile();
-
-		List<DeviceWithType> devices = new ArrayList<DeviceWithType>();
-		BufferedReader bufferedReader;
+	public DeviceOverview getDevice(String id) {
+		lock.readLock().lock();
 		try {
-			if (dbFile.length() == 0) {
-				return devices;
-			}
+			DeviceWithType device = devices.get(id);
+			return device == null ? null : device.deviceOverview;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 
-			FileReader f = new FileReader(dbFile);
-			bufferedReader = new BufferedReader(f);
+	public void deletDevice(String id) {
+		deleteDevices(Collections.singletonList(id));
+	}
 
-			ObjectMapper mapper = new ObjectMapper();
-			mapper.configure(Feature.AUTO_CLOSE_SOURCE, true);
-			devices = mapper.readValue(bufferedReader, new TypeReference<List<DeviceWithType>>() {
-			});
+	/**
+	 * Removes the devices with a single write of the journal
+	 */
+	public void deleteDevices(Collection<String> deleted) {
+		logger.debug("Deleting devices {} from database", deleted);
 
-			for (int i = 0; i < devices.size(); i++) {
-				System.out.println(devices.get(i).deviceOverview.id);
+		List<JournalRecord> records = new ArrayList<JournalRecord>();
+		Map<String, DeviceWithType> previous = new HashMap<String, DeviceWithType>();
+		long sequence;
+		lock.writeLock().lock();
+		try {
+			for (String id : deleted) {
+				DeviceWithType removed = devices.remove(id);
+				if (removed != null) {
+					records.add(new JournalRecord(JournalRecord.DELETE, id, null));
+					previous.put(id, removed);
+				} else {
+					logger.debug("Device {} not found in database", id);
+				}
 			}
+			sequence = append(records, previous);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		sync(sequence, records, previous);
+	}
 
-			logger.info("Devices {} fround in jsonDB.", devices.size());
-
+	/**
+	 * Appends the records to the journal, called with the write lock held.
+	 * The records are undone in memory if they can not be appended.
+	 * 
+	 * @param previous
+	 *            the devices removed by the records, by id
+	 * @return the sequence number of the append, 0 if nothing was appended
+	 */
+	private long append(List<JournalRecord> records, Map<String, DeviceWithType> previous) {
+		if (records.isEmpty()) {
+			return 0;
+		}
+		try {
+			return write(records);
 		} catch (IOException e) {
-			System.out.println(e.toString());
-			e.printStackTrace();
+			logger.error("Can not save {} changes in jsonDB", records.size(), e);
+			List<JournalRecord> undone = undo(records, previous);
+			try {
+				// part of the records may have been written
+				if (journal != null && !undone.isEmpty()) {
+					write(undone);
+				}
+			} catch (IOException ignored) {
+			}
+			throw new UncheckedIOException("Can not save the changes in jsonDB", e);
 		}
-		return devices;
 	}
 
-	public DeviceOverview getDevice(String id) {
-
-		setFile();
+	private long write(List<JournalRecord> records) throws IOException {
+		if (journal == null) {
+			throw new IOException("The journal " + journalFile + " is not open");
+		}
+		List<byte[]> lines = new ArrayList<byte[]>(records.size());
+		for (JournalRecord record : records) {
+			lines.add(recordWriter.writeValueAsBytes(record));
+		}
+		return journal.append(lines);
+	}
 
-		DeviceOverview device = null;
-		BufferedReader bufferedReader;
+	/**
+	 * Waits for the append to be on disk, called without the write lock so
+	 * that reads and other changes go on during the fsync. If the fsync fails
+	 * the records are undone in memory and reverted in the journal.
+	 */
+	private void sync(long sequence, List<JournalRecord> records, Map<String, DeviceWithType> previous) {
+		if (sequence == 0) {
+			return;
+		}
 		try {
-
-			if (dbFile.length() == 0) {
-				return device;
+			journal.sync(sequence);
+		} catch (IOException e) {
+			logger.error("Can not save {} changes in jsonDB", records.size(), e);
+			revert(records, previous);
+			throw new UncheckedIOException("Can not save the changes in jsonDB", e);
+		}
+		logger.info("{} changes saved in jsonDB.", records.size());
+		try {
+			if (journal.size() > JOURNAL_MAX_SIZE) {
+				scheduleCompaction();
 			}
+		} catch (IOException e) {
+			logger.error("Can not read the size of the journal {}", journalFile, e);
+		}
+	}
 
-			bufferedReader = new BufferedReader(new FileReader(dbFile));
-			ObjectMapper mapper = new ObjectMapper();
-			mapper.configure(Feature.AUTO_CLOSE_SOURCE, true);
-			List<DeviceWithType> jsonDevices = mapper.readValue(bufferedReader,
-					new TypeReference<List<DeviceWithType>>() {
-					});
-
-			for (int i = 0; i < jsonDevices.size(); i++) {
-				if (jsonDevices.get(i).deviceOverview.id.equals(id)) {
-					device = jsonDevices.get(i).deviceOverview;
+	/**
+	 * Restores in memory the devices changed by the records, unless a later
+	 * change replaced them already. Called with the write lock held.
+	 */
+	private List<JournalRecord> undo(List<JournalRecord> records, Map<String, DeviceWithType> previous) {
+		List<JournalRecord> undone = new ArrayList<JournalRecord>();
+		for (JournalRecord record : records) {
+			if (JournalRecord.PUT.equals(record.op)) {
+				if (devices.remove(record.id, record.device)) {
+					undone.add(new JournalRecord(JournalRecord.DELETE, record.id, null));
 				}
+			} else if (devices.putIfAbsent(record.id, previous.get(record.id)) == null) {
+				undone.add(new JournalRecord(JournalRecord.PUT, record.id, previous.get(record.id)));
 			}
+		}
+		return undone;
+	}
 
-		} catch (FileNotFoundException e) {
-			System.out.println(e.toString());
-			e.printStackTrace();
-		} catch (JsonParseException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (JsonMappingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	/**
+	 * Undoes records already appended to the journal, appending the reverse
+	 * records so that a restart does not replay them if they reached the disk
+	 */
+	private void revert(List<JournalRecord> records, Map<String, DeviceWithType> previous) {
+		long sequence;
+		lock.writeLock().lock();
+		try {
+			List<JournalRecord> undone = undo(records, previous);
+			sequence = undone.isEmpty() ? 0 : write(undone);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			logger.error("Can not revert {} changes in the journal {}", records.size(), journalFile, e);
+			return;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try {
+			if (sequence != 0) {
+				journal.sync(sequence);
+			}
+		} catch (IOException e) {
+			logger.error("Can not revert {} changes in the journal {}", records.size(), journalFile, e);
 		}
-		logger.info("Devices (id= {}, name= {}) fround in jsonDB.", device.id, device.name);
-		return device;
 	}
 
-	public void deletDevice(String id) {
-
-		setFile();
-
-		logger.debug("Deleting device {} from database", id);
+	/**
+	 * Reads the devices at startup, replaying the journals over the snapshot
+	 */
+	private Map<String, DeviceWithType> load() {
+		Map<String, DeviceWithType> devices = readSnapshot();
+		replay(compactingFile, devices);
+		replay(journalFile, devices);
+		return devices;
+	}
 
-		BufferedReader bufferedReader;
+	private Map<String, DeviceWithType> readSnapshot() {
+		Map<String, DeviceWithType> devices = new LinkedHashMap<String, DeviceWithType>();
+		if (!dbFile.exists() || dbFile.length() == 0) {
+			return devices;
+		}
 		try {
-
-			if (dbFile.length() == 0) {
-				logger.debug("Device {} not found in database", id);
-				return;
+			List<DeviceWithType> snapshot = snapshotReader.readValue(dbFile);
+			for (DeviceWithType d : snapshot) {
+				devices.put(d.deviceOverview.getId(), d);
 			}
+		} catch (IOException e) {
+			logger.error("Can not read the snapshot {}", dbFile, e);
+		}
+		return devices;
+	}
 
-			bufferedReader = new BufferedReader(new FileReader(dbFile));
-			ObjectMapper mapper = new ObjectMapper();
-			mapper.configure(Feature.AUTO_CLOSE_SOURCE, true);
-			List<DeviceWithType> jsonDevices = mapper.readValue(bufferedReader,
-					new TypeReference<List<DeviceWithType>>() {
-					});
-
-			DeviceWithType d = null;
-			logger.debug("Devices {} found in database", jsonDevices.size());
-			for (int i = 0; i < jsonDevices.size(); i++) {
-				if (jsonDevices.get(i).deviceOverview.id.equals(id)) {
-					d = jsonDevices.get(i);
-					logger.debug("Device {} found in database", id);
+	private void replay(File file, Map<String, DeviceWithType> devices) {
+		if (!file.exists()) {
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				JournalRecord record;
+				try {
+					record = recordReader.readValue(line);
+				} catch (JsonProcessingException e) {
+					// torn by a crash, it was never acknowledged
+					logger.warn("Skipping unreadable record of {}", file);
+					continue;
+				}
+				if (JournalRecord.PUT.equals(record.op)) {
+					devices.putIfAbsent(record.id, record.device);
+				} else if (JournalRecord.DELETE.equals(record.op)) {
+					devices.remove(record.id);
 				}
 			}
-
-			if (d != null) {
-				jsonDevices.remove(d);
-				logger.debug("Device {} deleted from database", id);
-				updateFile(jsonDevices);
-			}
-
-		} catch (FileNotFoundException e) {
-			System.out.println(e.toString());
-			e.printStackTrace();
-		} catch (JsonParseException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (JsonMappingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			logger.error("Can not replay the journal {}", file, e);
 		}
 	}
 
-	private void updateFile(List<DeviceWithType> devices) {
-		// if(devices.isEmpty()) {
-		// return;
-		// }
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(Feature.AUTO_CLOSE_SOURCE, true);
-
-		try (BufferedWriter out = new BufferedWriter(new FileWriter(dbFile))) {
-
-			// out.write(jsonString);
+	private void scheduleCompaction() {
+		if (compacting.compareAndSet(false, true)) {
+			compactor.execute(() -> {
+				try {
+					compact();
+				} catch (IOException e) {
+					logger.error("Can not compact jsonDB", e);
+				} finally {
+					compacting.set(false);
+				}
+			});
+		}
+	}
 
-			mapper.writeValue(out, devices);
-			String jsonString = mapper.writeValueAsString(devices);
+	/**
+	 * Folds the journal into a new snapshot. The snapshot is written to a
+	 * temporary file and renamed over the previous one, so that a crash leaves
+	 * either the old snapshot and its journal or the new snapshot.
+	 */
+	private void compact() throws IOException {
+		List<DeviceWithType> snapshot;
+		lock.writeLock().lock();
+		try {
+			// a journal left by an interrupted compaction is already in memory
+			if (!compactingFile.exists()) {
+				journal.rotate(compactingFile);
+			}
+			snapshot = new ArrayList<DeviceWithType>(devices.values());
+		} finally {
+			lock.writeLock().unlock();
+		}
 
-			logger.info("Device object {} saved in jsonDB.", jsonString);
-		} catch (IOException e) {
-			System.out.println(e.toString());
-			e.printStackTrace();
+		File tmpFile = new File(dbFileName + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+			out.write(snapshotWriter.writeValueAsBytes(snapshot));
+			out.getFD().sync();
 		}
+		Files.move(tmpFile.toPath(), dbFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		// the new snapshot must be in the directory before its journal goes
+		Journal.syncDirectory(dbFile);
+		Files.delete(compactingFile.toPath());
+		logger.info("jsonDB compacted, {} devices saved.", snapshot.size());
 	}
 
 }
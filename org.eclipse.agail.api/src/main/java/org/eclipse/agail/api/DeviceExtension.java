@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api;
+
+import java.util.List;
+
+import org.eclipse.agail.api.object.AggregateObject;
+import org.eclipse.agail.api.object.GattQueueStatsObject;
+import org.eclipse.agail.api.object.HistoryObject;
+import org.eclipse.agail.api.object.NotificationStatsObject;
+import org.eclipse.agail.api.object.PublishPolicyObject;
+import org.eclipse.agail.api.object.PublishStatsObject;
+import org.eclipse.agail.api.object.SamplingObject;
+import org.eclipse.agail.api.object.SamplingPolicyObject;
+import org.eclipse.agail.api.object.SubscriptionResultObject;
+import org.eclipse.agail.object.RecordObject;
+import org.freedesktop.dbus.DBusInterface;
+import org.freedesktop.dbus.DBusInterfaceName;
+import org.freedesktop.dbus.DBusSignal;
+import org.freedesktop.dbus.exceptions.DBusException;
+
+/**
+ * Additional methods exported by the devices of the DeviceFactory, on the same
+ * bus name and object path as the {@link org.eclipse.agail.Device} interface
+ */
+@DBusInterfaceName("org.eclipse.agail.DeviceExtension")
+public interface DeviceExtension extends DBusInterface {
+
+  static String AGILE_INTERFACE = "org.eclipse.agail.DeviceExtension";
+
+  /**
+   * Returns the values of the component kept by the device between the given
+   * times (inclusive)
+   *
+   * @param componentID
+   * @param from
+   *          start time in milliseconds since the epoch
+   * @param to
+   *          end time in milliseconds since the epoch
+   * @return
+   */
+  HistoryObject History(String componentID, long from, long to);
+
+  /**
+   * Returns the minimum, maximum, mean, count and last value of the component
+   * in each window of the given period
+   *
+   * @param componentID
+   * @param from
+   *          start time in milliseconds since the epoch
+   * @param to
+   *          end time in milliseconds since the epoch
+   * @param window
+   *          length of a window in milliseconds
+   * @return
+   */
+  AggregateObject Aggregate(String componentID, long from, long to, long window);
+
+  /**
+   * Sets the policy deciding which updates of the component are published
+   * with a NewSubscribeValueSignal, usually right before subscribing to it.
+   * The policy is shared by every subscriber of the component, not only the
+   * caller, and is reset to the default when the last subscription to the
+   * component is removed.
+   *
+   * @param componentID
+   * @param policy
+   */
+  void SetPublishPolicy(String componentID, PublishPolicyObject policy);
+
+  /**
+   * Returns the number of updates of the component published and suppressed
+   * since its publish policy was set
+   *
+   * @param componentID
+   * @return
+   */
+  PublishStatsObject PublishStats(String componentID);
+
+  /**
+   * Returns the depth of the queue of the notifications received by the device
+   * and the number of notifications processed and dropped so far
+   *
+   * @return
+   */
+  NotificationStatsObject NotificationStats();
+
+  /**
+   * Returns the depth of the queue of the GATT operations of a BLE device, the
+   * number of operations completed, failed and coalesced and their latency
+   *
+   * @return
+   */
+  GattQueueStatsObject GattQueueStats();
+
+  /**
+   * Sets the policy of the periodic reads keeping the last value of the
+   * component fresh
+   *
+   * @param componentID
+   * @param policy
+   */
+  void SetSamplingPolicy(String componentID, SamplingPolicyObject policy);
+
+  /**
+   * Returns the sampling policy of the component and its current interval
+   *
+   * @param componentID
+   * @return
+   */
+  SamplingObject Sampling(String componentID);
+
+  /**
+   * Subscribes to several components at once, all the components of the
+   * device if the list is empty
+   *
+   * @param componentIDs
+   * @return the outcome of the subscription of each component
+   */
+  List<SubscriptionResultObject> SubscribeAll(List<String> componentIDs);
+
+  /**
+   * Unsubscribes from several components at once, all the components of the
+   * device if the list is empty
+   *
+   * @param componentIDs
+   * @return the outcome of the unsubscription of each component
+   */
+  List<SubscriptionResultObject> UnsubscribeAll(List<String> componentIDs);
+
+  /**
+   * Signal carrying several updates of subscribed components at once, sent
+   * by the devices for their high rate components instead of one
+   * NewSubscribeValueSignal per update
+   */
+  public class NewSubscribeBatchSignal extends DBusSignal {
+
+    public final List<RecordObject> records;
+
+    public NewSubscribeBatchSignal(String path, List<RecordObject> records) throws DBusException {
+      super(path, records);
+      this.records = records;
+    }
+  }
+
+}
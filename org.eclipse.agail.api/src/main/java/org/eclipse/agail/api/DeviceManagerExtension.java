@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api;
+
+import java.util.List;
+
+import org.eclipse.agail.api.object.BatchResultObject;
+import org.eclipse.agail.api.object.DeviceQueryObject;
+import org.eclipse.agail.api.object.RegisterItemObject;
+import org.eclipse.agail.object.DeviceDefinition;
+import org.freedesktop.dbus.DBusInterface;
+import org.freedesktop.dbus.DBusInterfaceName;
+import org.freedesktop.dbus.DBusSignal;
+import org.freedesktop.dbus.exceptions.DBusException;
+
+/**
+ * Additional methods exported by the device manager, on the same bus name and
+ * object path as the {@link org.eclipse.agail.DeviceManager} interface
+ */
+@DBusInterfaceName("org.eclipse.agail.DeviceManagerExtension")
+public interface DeviceManagerExtension extends DBusInterface {
+
+  static String AGILE_INTERFACE = "org.eclipse.agail.DeviceManagerExtension";
+
+  /**
+   * Searches the registered devices
+   *
+   * @param query
+   *          filters, order and maximum number of the devices
+   * @return the matching devices
+   */
+  List<DeviceDefinition> Find(DeviceQueryObject query);
+
+  /**
+   * Starts registering and connecting several devices and returns. A
+   * BatchResultSignal is sent as soon as each device is done, then the new
+   * devices are stored at once and a BatchCompletedSignal is sent.
+   *
+   * @param batchID
+   *          id chosen by the caller, sent back with each result
+   * @param devices
+   */
+  void RegisterAll(String batchID, List<RegisterItemObject> devices);
+
+  /**
+   * Starts applying an operation to several registered devices and returns.
+   * A BatchResultSignal is sent as soon as each device is done, then a
+   * BatchCompletedSignal once they all are.
+   *
+   * @param batchID
+   *          id chosen by the caller, sent back with each result
+   * @param operation
+   *          one of delete, connect, disconnect or read
+   * @param deviceIDs
+   */
+  void RunBatch(String batchID, String operation, List<String> deviceIDs);
+
+  /**
+   * Signal carrying the outcome of one item of a batch
+   */
+  public class BatchResultSignal extends DBusSignal {
+
+    public final BatchResultObject result;
+
+    public BatchResultSignal(String path, BatchResultObject result) throws DBusException {
+      super(path, result);
+      this.result = result;
+    }
+  }
+
+  /**
+   * Signal sent once all the items of a batch are done and their changes
+   * stored
+   */
+  public class BatchCompletedSignal extends DBusSignal {
+
+    public final String batchID;
+
+    /**
+     * Reason the batch as a whole failed, e.g. its changes could not be
+     * stored, empty on success
+     */
+    public final String error;
+
+    public BatchCompletedSignal(String path, String batchID, String error) throws DBusException {
+      super(path, batchID, error);
+      this.batchID = batchID;
+      this.error = error;
+    }
+  }
+}
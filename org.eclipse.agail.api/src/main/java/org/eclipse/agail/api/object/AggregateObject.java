@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Aggregated values of a device component over fixed windows. The i-th
+ * element of each array describes the window starting at the i-th timestamp;
+ * windows without values are omitted.
+ */
+public class AggregateObject extends Struct {
+
+  @Position(0)
+  public final String deviceID;
+
+  @Position(1)
+  public final String componentID;
+
+  @Position(2)
+  public final String unit;
+
+  /**
+   * Length of a window in milliseconds
+   */
+  @Position(3)
+  public final long window;
+
+  @Position(4)
+  public final long[] timestamps;
+
+  @Position(5)
+  public final double[] min;
+
+  @Position(6)
+  public final double[] max;
+
+  @Position(7)
+  public final double[] mean;
+
+  @Position(8)
+  public final long[] count;
+
+  @Position(9)
+  public final double[] last;
+
+  public AggregateObject(String deviceID, String componentID, String unit, long window, long[] timestamps,
+      double[] min, double[] max, double[] mean, long[] count, double[] last) {
+    this.deviceID = deviceID;
+    this.componentID = componentID;
+    this.unit = unit;
+    this.window = window;
+    this.timestamps = timestamps;
+    this.min = min;
+    this.max = max;
+    this.mean = mean;
+    this.count = count;
+    this.last = last;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public String getComponentID() {
+    return componentID;
+  }
+
+  public String getUnit() {
+    return unit;
+  }
+
+  public long getWindow() {
+    return window;
+  }
+
+  public long[] getTimestamps() {
+    return timestamps;
+  }
+
+  public double[] getMin() {
+    return min;
+  }
+
+  public double[] getMax() {
+    return max;
+  }
+
+  public double[] getMean() {
+    return mean;
+  }
+
+  public long[] getCount() {
+    return count;
+  }
+
+  public double[] getLast() {
+    return last;
+  }
+}
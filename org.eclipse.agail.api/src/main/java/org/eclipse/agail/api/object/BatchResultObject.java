@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import java.util.Collections;
+
+import org.eclipse.agail.object.DeviceComponent;
+import org.eclipse.agail.object.DeviceDefinition;
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Outcome of one item of a batch of device operations
+ */
+public class BatchResultObject extends Struct {
+
+  /**
+   * Definition sent when the item did not resolve to a device
+   */
+  public static final DeviceDefinition NO_DEFINITION = new DeviceDefinition("", "", "", "", "", "",
+      Collections.<DeviceComponent> emptyList());
+
+  /**
+   * Id of the batch chosen by the caller
+   */
+  @Position(0)
+  public final String batchID;
+
+  /**
+   * Position of the item in the batch
+   */
+  @Position(1)
+  public final int index;
+
+  @Position(2)
+  public final String operation;
+
+  @Position(3)
+  public final String deviceID;
+
+  @Position(4)
+  public final boolean success;
+
+  /**
+   * Reason of the failure, empty on success
+   */
+  @Position(5)
+  public final String error;
+
+  /**
+   * The device the item applied to, {@link #NO_DEFINITION} if unknown
+   */
+  @Position(6)
+  public final DeviceDefinition definition;
+
+  public BatchResultObject(String batchID, int index, String operation, String deviceID, boolean success,
+      String error, DeviceDefinition definition) {
+    this.batchID = batchID;
+    this.index = index;
+    this.operation = operation;
+    this.deviceID = deviceID;
+    this.success = success;
+    this.error = error;
+    this.definition = definition;
+  }
+
+  public String getBatchID() {
+    return batchID;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public DeviceDefinition getDefinition() {
+    return definition;
+  }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Filters, order and size of a device search.
+ *
+ * A filter left empty matches every device, a filter ending with {@code *}
+ * matches the values starting with the text before it, any other filter must
+ * be equal to the value.
+ */
+public class DeviceQueryObject extends Struct {
+
+  @Position(0)
+  public final String id;
+
+  @Position(1)
+  public final String name;
+
+  @Position(2)
+  public final String address;
+
+  @Position(3)
+  public final String protocol;
+
+  /**
+   * Device type the device was registered with
+   */
+  @Position(4)
+  public final String type;
+
+  /**
+   * Connection status, see {@link org.eclipse.agail.object.DeviceStatusType}
+   */
+  @Position(5)
+  public final String status;
+
+  /**
+   * One of id, name, address, protocol, type or status, empty to sort by id
+   */
+  @Position(6)
+  public final String sortBy;
+
+  @Position(7)
+  public final boolean descending;
+
+  /**
+   * Maximum number of devices returned, 0 for no limit
+   */
+  @Position(8)
+  public final int limit;
+
+  public DeviceQueryObject(String id, String name, String address, String protocol, String type, String status,
+      String sortBy, boolean descending, int limit) {
+    this.id = id;
+    this.name = name;
+    this.address = address;
+    this.protocol = protocol;
+    this.type = type;
+    this.status = status;
+    this.sortBy = sortBy;
+    this.descending = descending;
+    this.limit = limit;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getAddress() {
+    return address;
+  }
+
+  public String getProtocol() {
+    return protocol;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public String getSortBy() {
+    return sortBy;
+  }
+
+  public boolean isDescending() {
+    return descending;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * State of the queue of the GATT operations of a device. Times are in
+ * milliseconds.
+ */
+public class GattQueueStatsObject extends Struct {
+
+  @Position(0)
+  public final String deviceID;
+
+  /**
+   * Number of operations waiting to be started
+   */
+  @Position(1)
+  public final int depth;
+
+  /**
+   * Number of operations waiting for their reply
+   */
+  @Position(2)
+  public final int inFlight;
+
+  @Position(3)
+  public final long completed;
+
+  @Position(4)
+  public final long failed;
+
+  /**
+   * Number of operations merged into an identical or superseded queued one
+   */
+  @Position(5)
+  public final long coalesced;
+
+  /**
+   * Mean time the operations waited in the queue before being started
+   */
+  @Position(6)
+  public final long meanQueueLatency;
+
+  @Position(7)
+  public final long maxQueueLatency;
+
+  /**
+   * Mean time the operations waited for their reply
+   */
+  @Position(8)
+  public final long meanServiceTime;
+
+  public GattQueueStatsObject(String deviceID, int depth, int inFlight, long completed, long failed, long coalesced,
+      long meanQueueLatency, long maxQueueLatency, long meanServiceTime) {
+    this.deviceID = deviceID;
+    this.depth = depth;
+    this.inFlight = inFlight;
+    this.completed = completed;
+    this.failed = failed;
+    this.coalesced = coalesced;
+    this.meanQueueLatency = meanQueueLatency;
+    this.maxQueueLatency = maxQueueLatency;
+    this.meanServiceTime = meanServiceTime;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  public long getCompleted() {
+    return completed;
+  }
+
+  public long getFailed() {
+    return failed;
+  }
+
+  public long getCoalesced() {
+    return coalesced;
+  }
+
+  public long getMeanQueueLatency() {
+    return meanQueueLatency;
+  }
+
+  public long getMaxQueueLatency() {
+    return maxQueueLatency;
+  }
+
+  public long getMeanServiceTime() {
+    return meanServiceTime;
+  }
+}
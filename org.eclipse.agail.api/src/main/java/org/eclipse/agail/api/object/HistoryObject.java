@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Values of a device component over a period of time. The i-th value was
+ * read at the i-th timestamp, timestamps are in ascending order.
+ */
+public class HistoryObject extends Struct {
+
+  @Position(0)
+  public final String deviceID;
+
+  @Position(1)
+  public final String componentID;
+
+  @Position(2)
+  public final String unit;
+
+  @Position(3)
+  public final long[] timestamps;
+
+  @Position(4)
+  public final double[] values;
+
+  public HistoryObject(String deviceID, String componentID, String unit, long[] timestamps, double[] values) {
+    this.deviceID = deviceID;
+    this.componentID = componentID;
+    this.unit = unit;
+    this.timestamps = timestamps;
+    this.values = values;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public String getComponentID() {
+    return componentID;
+  }
+
+  public String getUnit() {
+    return unit;
+  }
+
+  public long[] getTimestamps() {
+    return timestamps;
+  }
+
+  public double[] getValues() {
+    return values;
+  }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * State of the queue of the notifications received by a device and waiting to
+ * be processed
+ */
+public class NotificationStatsObject extends Struct {
+
+  @Position(0)
+  public final String deviceID;
+
+  /**
+   * Number of notifications waiting in the queue
+   */
+  @Position(1)
+  public final int depth;
+
+  @Position(2)
+  public final int capacity;
+
+  /**
+   * Overflow policy of the queue, DROP_OLDEST or CONFLATE
+   */
+  @Position(3)
+  public final String overflowPolicy;
+
+  @Position(4)
+  public final long received;
+
+  @Position(5)
+  public final long processed;
+
+  /**
+   * Number of notifications dropped because the queue was full
+   */
+  @Position(6)
+  public final long dropped;
+
+  /**
+   * Number of queued notifications replaced by a newer one of the same
+   * component because the queue was full
+   */
+  @Position(7)
+  public final long conflated;
+
+  public NotificationStatsObject(String deviceID, int depth, int capacity, String overflowPolicy, long received,
+      long processed, long dropped, long conflated) {
+    this.deviceID = deviceID;
+    this.depth = depth;
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+    this.received = received;
+    this.processed = processed;
+    this.dropped = dropped;
+    this.conflated = conflated;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public String getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public long getReceived() {
+    return received;
+  }
+
+  public long getProcessed() {
+    return processed;
+  }
+
+  public long getDropped() {
+    return dropped;
+  }
+
+  public long getConflated() {
+    return conflated;
+  }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Controls which updates of a subscribed component are published. A zero
+ * value disables the corresponding check.
+ */
+public class PublishPolicyObject extends Struct {
+
+  /**
+   * Minimum absolute change of the value to publish an update
+   */
+  @Position(0)
+  public final double absoluteDeadband;
+
+  /**
+   * Minimum change of the value, relative to the last published one, to
+   * publish an update
+   */
+  @Position(1)
+  public final double relativeDeadband;
+
+  /**
+   * Minimum time in milliseconds between two published updates
+   */
+  @Position(2)
+  public final long minInterval;
+
+  /**
+   * Maximum number of published updates per second
+   */
+  @Position(3)
+  public final double maxRate;
+
+  /**
+   * Time in milliseconds after which an update is published regardless of
+   * the other checks
+   */
+  @Position(4)
+  public final long heartbeat;
+
+  public PublishPolicyObject(double absoluteDeadband, double relativeDeadband, long minInterval, double maxRate,
+      long heartbeat) {
+    this.absoluteDeadband = absoluteDeadband;
+    this.relativeDeadband = relativeDeadband;
+    this.minInterval = minInterval;
+    this.maxRate = maxRate;
+    this.heartbeat = heartbeat;
+  }
+
+  public double getAbsoluteDeadband() {
+    return absoluteDeadband;
+  }
+
+  public double getRelativeDeadband() {
+    return relativeDeadband;
+  }
+
+  public long getMinInterval() {
+    return minInterval;
+  }
+
+  public double getMaxRate() {
+    return maxRate;
+  }
+
+  public long getHeartbeat() {
+    return heartbeat;
+  }
+}
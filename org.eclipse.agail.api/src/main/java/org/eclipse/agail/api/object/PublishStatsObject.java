@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Number of updates of a component published and suppressed by its publish
+ * policy
+ */
+public class PublishStatsObject extends Struct {
+
+  @Position(0)
+  public final String deviceID;
+
+  @Position(1)
+  public final String componentID;
+
+  @Position(2)
+  public final long published;
+
+  @Position(3)
+  public final long suppressed;
+
+  public PublishStatsObject(String deviceID, String componentID, long published, long suppressed) {
+    this.deviceID = deviceID;
+    this.componentID = componentID;
+    this.published = published;
+    this.suppressed = suppressed;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public String getComponentID() {
+    return componentID;
+  }
+
+  public long getPublished() {
+    return published;
+  }
+
+  public long getSuppressed() {
+    return suppressed;
+  }
+}
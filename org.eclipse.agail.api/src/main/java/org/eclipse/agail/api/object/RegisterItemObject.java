@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.eclipse.agail.object.DeviceOverview;
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * A device to register as part of a batch
+ */
+public class RegisterItemObject extends Struct {
+
+  @Position(0)
+  public final DeviceOverview overview;
+
+  @Position(1)
+  public final String deviceType;
+
+  public RegisterItemObject(DeviceOverview overview, String deviceType) {
+    this.overview = overview;
+    this.deviceType = deviceType;
+  }
+
+  public DeviceOverview getOverview() {
+    return overview;
+  }
+
+  public String getDeviceType() {
+    return deviceType;
+  }
+}
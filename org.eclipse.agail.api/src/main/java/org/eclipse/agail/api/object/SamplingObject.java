@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Sampling policy of a component and its current sampling interval
+ */
+public class SamplingObject extends Struct {
+
+  @Position(0)
+  public final String deviceID;
+
+  @Position(1)
+  public final String componentID;
+
+  @Position(2)
+  public final long minInterval;
+
+  @Position(3)
+  public final long maxInterval;
+
+  @Position(4)
+  public final double threshold;
+
+  /**
+   * Current time in milliseconds between two samples
+   */
+  @Position(5)
+  public final long interval;
+
+  public SamplingObject(String deviceID, String componentID, long minInterval, long maxInterval, double threshold,
+      long interval) {
+    this.deviceID = deviceID;
+    this.componentID = componentID;
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.threshold = threshold;
+    this.interval = interval;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public String getComponentID() {
+    return componentID;
+  }
+
+  public long getMinInterval() {
+    return minInterval;
+  }
+
+  public long getMaxInterval() {
+    return maxInterval;
+  }
+
+  public double getThreshold() {
+    return threshold;
+  }
+
+  public long getInterval() {
+    return interval;
+  }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Controls the periodic reads of a component. The interval is reset to
+ * {@code minInterval} when the value changes by more than {@code threshold}
+ * between two samples, and doubled up to {@code maxInterval} otherwise. Equal
+ * bounds sample at a fixed rate, a zero {@code minInterval} stops sampling.
+ */
+public class SamplingPolicyObject extends Struct {
+
+  /**
+   * Shortest time in milliseconds between two samples
+   */
+  @Position(0)
+  public final long minInterval;
+
+  /**
+   * Longest time in milliseconds between two samples
+   */
+  @Position(1)
+  public final long maxInterval;
+
+  /**
+   * Minimum absolute change of the value to sample at the shortest interval
+   */
+  @Position(2)
+  public final double threshold;
+
+  public SamplingPolicyObject(long minInterval, long maxInterval, double threshold) {
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.threshold = threshold;
+  }
+
+  public long getMinInterval() {
+    return minInterval;
+  }
+
+  public long getMaxInterval() {
+    return maxInterval;
+  }
+
+  public double getThreshold() {
+    return threshold;
+  }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.agail.api.object;
+
+import org.freedesktop.dbus.Position;
+import org.freedesktop.dbus.Struct;
+
+/**
+ * Outcome of the subscription (or unsubscription) of a component requested
+ * together with other components
+ */
+public class SubscriptionResultObject extends Struct {
+
+  @Position(0)
+  public final String deviceID;
+
+  @Position(1)
+  public final String componentID;
+
+  @Position(2)
+  public final boolean success;
+
+  /**
+   * Reason of the failure, empty on success
+   */
+  @Position(3)
+  public final String error;
+
+  public SubscriptionResultObject(String deviceID, String componentID, boolean success, String error) {
+    this.deviceID = deviceID;
+    this.componentID = componentID;
+    this.success = success;
+    this.error = error;
+  }
+
+  public String getDeviceID() {
+    return deviceID;
+  }
+
+  public String getComponentID() {
+    return componentID;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+
+  public String getError() {
+    return error;
+  }
+}
@@ -69,6 +69,8 @@ public class HttpServer {
     
     ResourceConfig res = new AgileApplication();
     ServletHolder servlet = new ServletHolder(new ServletContainer(res));
+    // needed by the resources suspending their responses while reading devices
+    servlet.setAsyncSupported(true);
     context.addServlet(servlet, "/api/*");
     
     ServletHolder logbackServlet = new ServletHolder(new ViewStatusMessagesServlet());
@@ -16,24 +16,43 @@ package org.eclipse.agail.http.resource;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.freedesktop.DBus.Error.UnknownObject;
 import org.freedesktop.DBus.Error.ServiceUnknown;
+import org.freedesktop.dbus.CallbackHandler;
 import org.freedesktop.dbus.Variant;
 import org.freedesktop.dbus.exceptions.DBusException;
+import org.freedesktop.dbus.exceptions.DBusExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.eclipse.agail.api.DeviceExtension;
+import org.eclipse.agail.api.object.AggregateObject;
+import org.eclipse.agail.api.object.GattQueueStatsObject;
+import org.eclipse.agail.api.object.HistoryObject;
+import org.eclipse.agail.api.object.NotificationStatsObject;
+import org.eclipse.agail.api.object.PublishPolicyObject;
+import org.eclipse.agail.api.object.PublishStatsObject;
+import org.eclipse.agail.api.object.SamplingObject;
+import org.eclipse.agail.api.object.SamplingPolicyObject;
+import org.eclipse.agail.api.object.SubscriptionResultObject;
 import org.eclipse.agail.exception.AgileDeviceNotFoundException;
 import org.eclipse.agail.exception.AgileNoResultException;
 import org.eclipse.agail.http.service.DbusClient;
@@ -53,6 +72,47 @@ public class Device {
   protected Logger logger = LoggerFactory.getLogger(Device.class);
   
   @Inject DbusClient client;
+
+  /**
+   * Maximum time in seconds a suspended read waits for the device to reply
+   */
+  protected static final long READ_TIMEOUT = 30;
+
+  /**
+   * Resumes a suspended read with the reply of the asynchronous DBus call, so
+   * that no server thread is parked while the device is being read
+   */
+  protected static class AsyncReadHandler<T> implements CallbackHandler<T> {
+
+    private final AsyncResponse asyncResponse;
+
+    public AsyncReadHandler(AsyncResponse asyncResponse) {
+      this.asyncResponse = asyncResponse;
+      asyncResponse.setTimeout(READ_TIMEOUT, TimeUnit.SECONDS);
+      asyncResponse.setTimeoutHandler(response -> response
+          .resume(new WebApplicationException("Timed out reading data", Response.Status.GATEWAY_TIMEOUT)));
+    }
+
+    @Override
+    public void handle(T result) {
+      if (result == null || (result instanceof List && ((List<?>) result).isEmpty())) {
+        asyncResponse.resume(Response.noContent().build());
+      } else {
+        asyncResponse.resume(result);
+      }
+    }
+
+    @Override
+    public void handleError(DBusExecutionException ex) {
+      if (ex instanceof AgileNoResultException) {
+        asyncResponse.resume(Response.noContent().build());
+      } else if (ex instanceof UnknownObject || ex instanceof ServiceUnknown) {
+        asyncResponse.resume(new AgileDeviceNotFoundException("Device not found"));
+      } else {
+        asyncResponse.resume(new WebApplicationException("Error on reading data", ex));
+      }
+    }
+  }
   
   protected org.eclipse.agail.Device getDevice(String id) throws DBusException {
     int pos = id.indexOf('_');
@@ -63,6 +123,15 @@ public class Device {
     }
   }
 
+  protected DeviceExtension getDeviceExtension(String id) throws DBusException {
+    int pos = id.indexOf('_');
+    if (pos < 0) {
+      return client.getDeviceExtension(id);
+    } else {
+      return client.getDeviceExtension("org.eclipse.agail.Device." + id.substring(0, pos), id.substring(pos+1));
+    }
+  }
+
   @GET
   @Path("/profile")
   public List<DeviceComponent> Profile(@PathParam("id") String id) throws DBusException {
@@ -104,21 +173,14 @@ public class Device {
   }
 
 	@GET
-	public List<RecordObject> Read(@PathParam("id") String id) throws DBusException {
-    List<RecordObject> result = null;
+	public void Read(@PathParam("id") String id, @Suspended AsyncResponse asyncResponse) throws DBusException {
     try {
-      result = getDevice(id).ReadAll();
-    } catch (AgileNoResultException e) {
-      return null;
+      client.callAsync(getDevice(id), "ReadAll", new AsyncReadHandler<List<RecordObject>>(asyncResponse));
     } catch (UnknownObject | ServiceUnknown ex) {
       throw new AgileDeviceNotFoundException("Device not found");
     } catch (Exception ex) {
       throw new WebApplicationException("Error on reading data", ex);
     }
-    if (result.size() == 0) {
-      return null;
-    }
-    return result;
 	}
 
 	@GET
@@ -182,13 +244,11 @@ public class Device {
 	@GET
 	@Path("/{sensorName}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public RecordObject Read(@PathParam("id") String id, @PathParam("sensorName") String sensorName)
-			throws DBusException {
+	public void Read(@PathParam("id") String id, @PathParam("sensorName") String sensorName,
+			@Suspended AsyncResponse asyncResponse) throws DBusException {
     try {
       logger.debug("Read on {}/{}", id, sensorName);
-      return getDevice(id).Read(sensorName);
-    } catch (AgileNoResultException e) {
-      return null;
+      client.callAsync(getDevice(id), "Read", new AsyncReadHandler<RecordObject>(asyncResponse), sensorName);
     } catch (UnknownObject | ServiceUnknown ex) {
       throw new AgileDeviceNotFoundException("Device not found");
     } catch (Exception ex) {
@@ -212,6 +272,88 @@ public class Device {
     }
 	}
 
+  @GET
+  @Path("/{componentID}/history")
+  public HistoryObject History(@PathParam("id") String id, @PathParam("componentID") String componentID,
+      @QueryParam("from") @DefaultValue("0") long from, @QueryParam("to") @DefaultValue("" + Long.MAX_VALUE) long to)
+      throws DBusException {
+    try {
+      logger.debug("History on {}/{} from {} to {}", id, componentID, from, to);
+      return getDeviceExtension(id).History(componentID, from, to);
+    } catch (AgileNoResultException e) {
+      return null;
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on reading history", ex);
+    }
+  }
+
+  @GET
+  @Path("/{componentID}/aggregate")
+  public AggregateObject Aggregate(@PathParam("id") String id, @PathParam("componentID") String componentID,
+      @QueryParam("from") @DefaultValue("0") long from, @QueryParam("to") @DefaultValue("" + Long.MAX_VALUE) long to,
+      @QueryParam("window") @DefaultValue("60000") long window) throws DBusException {
+    if (window <= 0) {
+      throw new WebApplicationException("Aggregation window must be positive", Response.Status.BAD_REQUEST);
+    }
+    try {
+      logger.debug("Aggregate on {}/{} from {} to {} every {}", id, componentID, from, to, window);
+      return getDeviceExtension(id).Aggregate(componentID, from, to, window);
+    } catch (AgileNoResultException e) {
+      return null;
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on reading history", ex);
+    }
+  }
+
+  /**
+   * Sets the periodic reads of the component, see
+   * {@link SamplingPolicyObject}. Without maxInterval the component is
+   * sampled at a fixed rate.
+   */
+  @PUT
+  @Path("/{componentID}/sampling")
+  public SamplingObject SetSamplingPolicy(@PathParam("id") String id, @PathParam("componentID") String componentID,
+      @QueryParam("minInterval") @DefaultValue("0") long minInterval,
+      @QueryParam("maxInterval") @DefaultValue("0") long maxInterval,
+      @QueryParam("threshold") @DefaultValue("0") double threshold) throws DBusException {
+    long max = Math.max(minInterval, maxInterval);
+    if (minInterval < 0 || threshold < 0) {
+      throw new WebApplicationException("Sampling intervals and threshold must not be negative",
+          Response.Status.BAD_REQUEST);
+    }
+    try {
+      logger.debug("Sampling of {}/{} every {} - {} ms", id, componentID, minInterval, max);
+      DeviceExtension device = getDeviceExtension(id);
+      device.SetSamplingPolicy(componentID, new SamplingPolicyObject(minInterval, max, threshold));
+      return minInterval > 0 ? device.Sampling(componentID) : null;
+    } catch (AgileNoResultException e) {
+      throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on setting sampling policy", ex);
+    }
+  }
+
+  @GET
+  @Path("/{componentID}/sampling")
+  public SamplingObject Sampling(@PathParam("id") String id, @PathParam("componentID") String componentID)
+      throws DBusException {
+    try {
+      return getDeviceExtension(id).Sampling(componentID);
+    } catch (AgileNoResultException e) {
+      return null;
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on reading sampling policy", ex);
+    }
+  }
+
   @POST
   @Path("/{componentName}/{payload}")
   public void Write(@PathParam("id") String id, @PathParam("componentName") String componentName, @PathParam("payload") String payload) throws DBusException {
@@ -224,11 +366,62 @@ public class Device {
     }
   }
 
+  /**
+   * Subscribes to the components given with the component query parameter, to
+   * all the components of the device if none is given
+   */
+  @POST
+  @Path("/subscribe")
+  public List<SubscriptionResultObject> SubscribeAll(@PathParam("id") String id,
+      @QueryParam("component") List<String> components) throws DBusException {
+    try {
+      logger.debug("Subscribe to {}/{}", id, components);
+      return getDeviceExtension(id).SubscribeAll(components);
+    } catch (AgileNoResultException e) {
+      throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on subscribing for data", ex);
+    }
+  }
+
+  @DELETE
+  @Path("/subscribe")
+  public List<SubscriptionResultObject> UnsubscribeAll(@PathParam("id") String id,
+      @QueryParam("component") List<String> components) throws DBusException {
+    try {
+      logger.debug("Unsubscribe from {}/{}", id, components);
+      return getDeviceExtension(id).UnsubscribeAll(components);
+    } catch (AgileNoResultException e) {
+      throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on unsubscribing for data", ex);
+    }
+  }
+
+  /**
+   * Subscribes to the component. The optional query parameters set the policy
+   * deciding which updates are published, see {@link PublishPolicyObject}.
+   * The policy applies to every subscriber of the component until the last
+   * one unsubscribes.
+   */
   @POST
   @Path("/{sensorName}/subscribe")
-  public void Subscribe(@PathParam("id") String id, @PathParam("sensorName") String sensorName) throws DBusException {
+  public void Subscribe(@PathParam("id") String id, @PathParam("sensorName") String sensorName,
+      @QueryParam("deadband") @DefaultValue("0") double deadband,
+      @QueryParam("relativeDeadband") @DefaultValue("0") double relativeDeadband,
+      @QueryParam("minInterval") @DefaultValue("0") long minInterval,
+      @QueryParam("maxRate") @DefaultValue("0") double maxRate,
+      @QueryParam("heartbeat") @DefaultValue("0") long heartbeat) throws DBusException {
     try {
       logger.debug("Subscribe to {}/{}", id, sensorName);
+      if (deadband > 0 || relativeDeadband > 0 || minInterval > 0 || maxRate > 0 || heartbeat > 0) {
+        getDeviceExtension(id).SetPublishPolicy(sensorName,
+            new PublishPolicyObject(deadband, relativeDeadband, minInterval, maxRate, heartbeat));
+      }
       getDevice(id).Subscribe(sensorName);
     } catch (UnknownObject | ServiceUnknown ex) {
       throw new AgileDeviceNotFoundException("Device not found");
@@ -237,6 +430,47 @@ public class Device {
     }
   }
   
+  @GET
+  @Path("/{sensorName}/subscribe/stats")
+  public PublishStatsObject PublishStats(@PathParam("id") String id, @PathParam("sensorName") String sensorName)
+      throws DBusException {
+    try {
+      return getDeviceExtension(id).PublishStats(sensorName);
+    } catch (AgileNoResultException e) {
+      return null;
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on reading subscription stats", ex);
+    }
+  }
+
+  @GET
+  @Path("/notifications/stats")
+  public NotificationStatsObject NotificationStats(@PathParam("id") String id) throws DBusException {
+    try {
+      return getDeviceExtension(id).NotificationStats();
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on reading notification stats", ex);
+    }
+  }
+
+  @GET
+  @Path("/gatt/stats")
+  public GattQueueStatsObject GattQueueStats(@PathParam("id") String id) throws DBusException {
+    try {
+      return getDeviceExtension(id).GattQueueStats();
+    } catch (AgileNoResultException e) {
+      return null;
+    } catch (UnknownObject | ServiceUnknown ex) {
+      throw new AgileDeviceNotFoundException("Device not found");
+    } catch (Exception ex) {
+      throw new WebApplicationException("Error on reading GATT queue stats", ex);
+    }
+  }
+
   @DELETE
   @Path("/{sensorName}/subscribe")
   public void Unsubscribe(@PathParam("id") String id, @PathParam("sensorName") String sensorName) throws DBusException {
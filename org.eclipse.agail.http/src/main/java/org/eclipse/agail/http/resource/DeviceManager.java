@@ -14,7 +14,15 @@
 package org.eclipse.agail.http.resource;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletResponse;
@@ -29,20 +37,32 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.freedesktop.dbus.DBusSigHandler;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.eclipse.agail.api.DeviceManagerExtension.BatchCompletedSignal;
+import org.eclipse.agail.api.DeviceManagerExtension.BatchResultSignal;
+import org.eclipse.agail.api.object.BatchResultObject;
+import org.eclipse.agail.api.object.DeviceQueryObject;
+import org.eclipse.agail.api.object.RegisterItemObject;
 import org.eclipse.agail.exception.AgileDeviceNotFoundException;
 import org.eclipse.agail.exception.AgileNoResultException;
 import org.eclipse.agail.http.Util;
 import org.eclipse.agail.http.resource.devicemanager.BatchBody;
+import org.eclipse.agail.http.resource.devicemanager.DeviceBatchBody;
+import org.eclipse.agail.http.resource.devicemanager.FindQuery;
+import org.eclipse.agail.http.resource.devicemanager.RegisterBatchBody;
 import org.eclipse.agail.http.service.DbusClient;
 import org.eclipse.agail.object.DeviceDefinition;
 import org.eclipse.agail.object.DeviceOverview;
@@ -66,6 +86,22 @@ public class DeviceManager {
 	@Context
 	private HttpServletResponse response;
 
+	/**
+	 * Operations of the devices that can be run in batch, besides register
+	 */
+	private static final List<String> BATCH_OPERATIONS = Arrays.asList("delete", "connect", "disconnect", "read");
+
+	/**
+	 * Maximum time in seconds a batch response waits for the next result
+	 */
+	private static final long BATCH_ITEM_TIMEOUT = 120;
+
+	/**
+	 * Time in milliseconds a finished batch waits for results signalled after
+	 * its end
+	 */
+	private static final long BATCH_SETTLE_TIMEOUT = 1000;
+
 	@GET
 	@Path("/typeof")
 	public List<String> MatchingDeviceTypesDEPRECATED(DeviceOverview overview) throws DBusException, IOException {
@@ -111,8 +147,22 @@ public class DeviceManager {
 
 	@POST
 	@Path("/find")
-	public String Find() {
-		throw new InternalError("Not implemented");
+	public List<DeviceDefinition> Find(FindQuery query) throws DBusException {
+		if (query == null) {
+			query = new FindQuery();
+		}
+		DeviceQueryObject deviceQuery = new DeviceQueryObject(orEmpty(query.id), orEmpty(query.name),
+				orEmpty(query.address), orEmpty(query.protocol), orEmpty(query.type), orEmpty(query.status),
+				orEmpty(query.sort), query.descending, query.limit);
+		try {
+			return client.getDeviceManagerExtension().Find(deviceQuery);
+		} catch (AgileNoResultException e) {
+			throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+		}
+	}
+
+	private static String orEmpty(String value) {
+		return value == null ? "" : value;
 	}
 
 	@GET
@@ -154,4 +204,149 @@ public class DeviceManager {
 		client.getDeviceManager().Batch(body.operation, body.arguments);
 	}
 
+	/**
+	 * Registers and connects several devices. The response is a JSON array
+	 * of the outcome of each device, written as soon as the device is done.
+	 */
+	@POST
+	@Path("/batch/register")
+	public Response RegisterAll(RegisterBatchBody body) throws DBusException {
+		List<RegisterItemObject> items = new ArrayList<RegisterItemObject>();
+		List<String> ids = new ArrayList<String>();
+		if (body.devices != null) {
+			for (RegisterPayload device : body.devices) {
+				items.add(new RegisterItemObject(device.overview, device.type));
+				ids.add(device.overview == null || device.overview.id == null ? "" : device.overview.id);
+			}
+		}
+		String batchID = batchID(body.batchID);
+		return streamBatch(batchID, "register", ids,
+				() -> client.getDeviceManagerExtension().RegisterAll(batchID, items));
+	}
+
+	/**
+	 * Deletes, connects, disconnects or reads several devices. The response
+	 * is a JSON array of the outcome of each device, written as soon as the
+	 * device is done.
+	 */
+	@POST
+	@Path("/batch/{operation}")
+	public Response RunBatch(@PathParam("operation") String operation, DeviceBatchBody body) throws DBusException {
+		if (!BATCH_OPERATIONS.contains(operation)) {
+			throw new WebApplicationException("Unknown batch operation " + operation, Response.Status.BAD_REQUEST);
+		}
+		List<String> ids = body.ids == null ? new ArrayList<String>() : body.ids;
+		String batchID = batchID(body.batchID);
+		return streamBatch(batchID, operation, ids,
+				() -> client.getDeviceManagerExtension().RunBatch(batchID, operation, ids));
+	}
+
+	private static String batchID(String batchID) {
+		return batchID == null || batchID.isEmpty() ? UUID.randomUUID().toString() : batchID;
+	}
+
+	private interface BatchStart {
+		void start() throws DBusException;
+	}
+
+	/**
+	 * Starts a batch of the device manager and streams the results received
+	 * with the BatchResultSignal of the batch until its BatchCompletedSignal.
+	 * Items without a result are written as failures, and a batch that failed
+	 * or timed out ends with an entry of index -1 holding the error.
+	 */
+	private Response streamBatch(String batchID, String operation, List<String> deviceIDs, BatchStart batch)
+			throws DBusException {
+		BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+		DBusSigHandler<BatchResultSignal> resultHandler = new DBusSigHandler<BatchResultSignal>() {
+			@Override
+			public void handle(BatchResultSignal sig) {
+				if (batchID.equals(sig.result.batchID)) {
+					events.add(sig.result);
+				}
+			}
+		};
+		DBusSigHandler<BatchCompletedSignal> completedHandler = new DBusSigHandler<BatchCompletedSignal>() {
+			@Override
+			public void handle(BatchCompletedSignal sig) {
+				if (batchID.equals(sig.batchID)) {
+					events.add(sig);
+				}
+			}
+		};
+		client.addSigHandler(BatchResultSignal.class, resultHandler);
+		client.addSigHandler(BatchCompletedSignal.class, completedHandler);
+		try {
+			batch.start();
+		} catch (AgileNoResultException e) {
+			removeBatchHandlers(batchID, resultHandler, completedHandler);
+			throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+		} catch (DBusException | RuntimeException e) {
+			removeBatchHandlers(batchID, resultHandler, completedHandler);
+			throw e;
+		}
+
+		StreamingOutput output = out -> {
+			JsonGenerator json = mapper.getFactory().createGenerator(out);
+			Set<Integer> sent = new HashSet<Integer>();
+			String error = null;
+			try {
+				json.writeStartArray();
+				boolean completed = false;
+				while (sent.size() < deviceIDs.size() || !completed) {
+					Object event = completed ? events.poll(BATCH_SETTLE_TIMEOUT, TimeUnit.MILLISECONDS)
+							: events.poll(BATCH_ITEM_TIMEOUT, TimeUnit.SECONDS);
+					if (event instanceof BatchResultObject) {
+						BatchResultObject result = (BatchResultObject) event;
+						if (sent.add(result.index)) {
+							json.writeObject(result);
+							json.flush();
+						}
+					} else if (event instanceof BatchCompletedSignal) {
+						completed = true;
+						String message = ((BatchCompletedSignal) event).error;
+						if (!message.isEmpty()) {
+							logger.error("Batch {} failed: {}", batchID, message);
+							error = message;
+						}
+					} else if (completed) {
+						break;
+					} else {
+						logger.error("Batch {} timed out after {} results", batchID, sent.size());
+						error = "Batch timed out after " + sent.size() + " results";
+						break;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				error = "Batch interrupted";
+			} finally {
+				removeBatchHandlers(batchID, resultHandler, completedHandler);
+			}
+			for (int index = 0; index < deviceIDs.size(); index++) {
+				if (!sent.contains(index)) {
+					json.writeObject(new BatchResultObject(batchID, index, operation, deviceIDs.get(index), false,
+							error == null ? "No result received" : error, BatchResultObject.NO_DEFINITION));
+				}
+			}
+			if (error != null) {
+				json.writeObject(new BatchResultObject(batchID, -1, operation, "", false, error,
+						BatchResultObject.NO_DEFINITION));
+			}
+			json.writeEndArray();
+			json.flush();
+		};
+		return Response.ok(output, MediaType.APPLICATION_JSON).build();
+	}
+
+	private void removeBatchHandlers(String batchID, DBusSigHandler<BatchResultSignal> resultHandler,
+			DBusSigHandler<BatchCompletedSignal> completedHandler) {
+		try {
+			client.removeSigHandler(BatchResultSignal.class, resultHandler);
+			client.removeSigHandler(BatchCompletedSignal.class, completedHandler);
+		} catch (DBusException e) {
+			logger.warn("Can not remove the handlers of batch {}: {}", batchID, e.getMessage());
+		}
+	}
+
 }
@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (C) 2017 Create-Net / FBK.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *     Create-Net / FBK - initial API and implementation
+ ******************************************************************************/
+
+
+package org.eclipse.agail.http.resource.devicemanager;
+
+import java.util.List;
+
+/**
+ * Devices to delete, connect, disconnect or read in a batch
+ */
+public class DeviceBatchBody {
+  public String batchID;
+  public List<String> ids;
+}
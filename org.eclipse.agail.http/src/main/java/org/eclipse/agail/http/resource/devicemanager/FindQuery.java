@@ -14,6 +14,7 @@
 package org.eclipse.agail.http.resource.devicemanager;
 
 /**
+ * Filters of a device search, a filter ending with * matches by prefix
  *
  * @author Luca Capra <lcapra@create-net.org>
  */
@@ -22,5 +23,11 @@ public class FindQuery {
   public String name;
   public String protocol;
   public String id;
+  public String address;
+  public String type;
+  public String status;
+  public String sort;
+  public boolean descending;
+  public int limit;
   
 }
@@ -17,10 +17,15 @@ import org.eclipse.agail.Device;
 import org.eclipse.agail.DeviceManager;
 import org.eclipse.agail.Protocol;
 import org.eclipse.agail.ProtocolManager;
+import org.eclipse.agail.api.DeviceExtension;
+import org.eclipse.agail.api.DeviceManagerExtension;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import org.freedesktop.dbus.CallbackHandler;
 import org.freedesktop.dbus.DBusConnection;
 import org.freedesktop.dbus.DBusInterface;
+import org.freedesktop.dbus.DBusSigHandler;
+import org.freedesktop.dbus.DBusSignal;
 import org.freedesktop.dbus.exceptions.DBusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +49,7 @@ public class DbusClient {
 
   protected synchronized DBusInterface getObject(String objectBusname, String objectPath, Class<? extends DBusInterface> clazz) throws DBusException {
     
-    String key = objectBusname + ":" + objectPath;
+    String key = objectBusname + ":" + objectPath + ":" + clazz.getName();
     if(instances.containsKey(key)) {
       logger.debug("Load cached object {}:{}", objectBusname, objectPath);
       return instances.get(key);
@@ -60,6 +65,27 @@ public class DbusClient {
     }
   }
   
+  /**
+   * Calls a method of a remote object without waiting for the reply, the
+   * callback is invoked by the DBus connection once the reply arrives
+   *
+   * @param remoteObject the remote object
+   * @param method the name of the method to call
+   * @param callback the handler of the reply or of the error
+   * @param args the arguments of the method
+   */
+  public <A> void callAsync(DBusInterface remoteObject, String method, CallbackHandler<A> callback, Object... args) {
+    connection.callWithCallback(remoteObject, method, callback, args);
+  }
+
+  public <T extends DBusSignal> void addSigHandler(Class<T> type, DBusSigHandler<T> handler) throws DBusException {
+    connection.addSigHandler(type, handler);
+  }
+
+  public <T extends DBusSignal> void removeSigHandler(Class<T> type, DBusSigHandler<T> handler) throws DBusException {
+    connection.removeSigHandler(type, handler);
+  }
+
   public Device getDevice(String id) throws DBusException {
     String busname = Device.AGILE_INTERFACE;
     String path = "/" + Device.AGILE_INTERFACE.replace(".", "/")  + "/" + id;
@@ -70,6 +96,17 @@ public class DbusClient {
     String path = "/" + busname.replace(".", "/")  + "/" + id;
     return (Device) getObject(busname, path, Device.class);
   }
+
+  public DeviceExtension getDeviceExtension(String id) throws DBusException {
+    String busname = Device.AGILE_INTERFACE;
+    String path = "/" + Device.AGILE_INTERFACE.replace(".", "/")  + "/" + id;
+    return (DeviceExtension) getObject(busname, path, DeviceExtension.class);
+  }
+
+  public DeviceExtension getDeviceExtension(String busname, String id) throws DBusException {
+    String path = "/" + busname.replace(".", "/")  + "/" + id;
+    return (DeviceExtension) getObject(busname, path, DeviceExtension.class);
+  }
   
   public Protocol getProtocol(String id) throws DBusException {
     String iface = Protocol.AGILE_INTERFACE;
@@ -89,4 +126,10 @@ public class DbusClient {
     return (DeviceManager) getObject(iface, path, DeviceManager.class);
   }
 
+  public DeviceManagerExtension getDeviceManagerExtension() throws DBusException {
+    String iface = DeviceManager.AGILE_INTERFACE;
+    String path = "/" + DeviceManager.AGILE_INTERFACE.replace(".", "/");
+    return (DeviceManagerExtension) getObject(iface, path, DeviceManagerExtension.class);
+  }
+
 }
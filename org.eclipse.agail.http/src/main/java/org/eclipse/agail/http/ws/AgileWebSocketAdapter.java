@@ -24,11 +24,16 @@ import org.freedesktop.dbus.exceptions.DBusException;
 
 import org.eclipse.agail.Device;
 import org.eclipse.agail.Device.NewSubscribeValueSignal;
+import org.eclipse.agail.api.DeviceExtension;
+import org.eclipse.agail.api.DeviceExtension.NewSubscribeBatchSignal;
+import org.eclipse.agail.object.RecordObject;
 import org.eclipse.agail.object.StatusType;
 import org.eclipse.agail.object.DeviceStatusType;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,8 +51,16 @@ public class AgileWebSocketAdapter extends WebSocketAdapter {
   private String deviceID = null;
   private String sensorName = null;
   private DBusSigHandler sigHandler;
+  private DBusSigHandler<DeviceExtension.NewSubscribeBatchSignal> batchSigHandler;
   private boolean subscribed = false;
 
+  /**
+   * Components whose records arrive with a NewSubscribeValueSignal each. A
+   * device may also publish them in batches, see agile.device.batch.records,
+   * so their batched records are skipped to send each record once.
+   */
+  private final Set<String> perRecordComponents = ConcurrentHashMap.newKeySet();
+
   private ObjectMapper mapper = new ObjectMapper();
 
   protected Logger logger = LoggerFactory.getLogger(AgileWebSocketAdapter.class);
@@ -81,15 +94,23 @@ public class AgileWebSocketAdapter extends WebSocketAdapter {
             public void handle(NewSubscribeValueSignal sig) {
               if (sig.record.getDeviceID().equals(deviceID) && sig.record.getComponentID().equals(sensorName)) {
                 logger.debug("http: New value {}%n", sig.record);
-                try {
-                  session.getRemote().sendString(mapper.writeValueAsString(sig.record));
-                } catch (IOException e) {
-                  e.printStackTrace();
-                }
+                sendRecord(sig.record);
               }
             }
           };
           connection.addSigHandler(Device.NewSubscribeValueSignal.class, sigHandler);
+
+          batchSigHandler = new DBusSigHandler<DeviceExtension.NewSubscribeBatchSignal>() {
+            @Override
+            public void handle(NewSubscribeBatchSignal sig) {
+              for (RecordObject record : sig.records) {
+                if (record.getDeviceID().equals(deviceID) && record.getComponentID().equals(sensorName)) {
+                  sendBatched(record);
+                }
+              }
+            }
+          };
+          connection.addSigHandler(DeviceExtension.NewSubscribeBatchSignal.class, batchSigHandler);
         } else {
           logger.info("Device {} not connected", deviceID);
           sess.close(404, "Device not connected");
@@ -100,14 +121,20 @@ public class AgileWebSocketAdapter extends WebSocketAdapter {
         sigHandler = new DBusSigHandler<Device.NewSubscribeValueSignal>() {
           @Override
           public void handle(NewSubscribeValueSignal sig) {
-            try {
-              session.getRemote().sendString(mapper.writeValueAsString(sig.record));
-            } catch (IOException e) {
-              e.printStackTrace();
-            }
+            sendRecord(sig.record);
           }
         };
         connection.addSigHandler(Device.NewSubscribeValueSignal.class, sigHandler);
+
+        batchSigHandler = new DBusSigHandler<DeviceExtension.NewSubscribeBatchSignal>() {
+          @Override
+          public void handle(NewSubscribeBatchSignal sig) {
+            for (RecordObject record : sig.records) {
+              sendBatched(record);
+            }
+          }
+        };
+        connection.addSigHandler(DeviceExtension.NewSubscribeBatchSignal.class, batchSigHandler);
       }
     } catch (org.freedesktop.DBus.Error.ServiceUnknown e) {
       sess.close(404, "Device not found");
@@ -129,6 +156,11 @@ public class AgileWebSocketAdapter extends WebSocketAdapter {
         sigHandler = null;
       }
 
+      if (batchSigHandler != null) {
+        connection.removeSigHandler(DeviceExtension.NewSubscribeBatchSignal.class, batchSigHandler);
+        batchSigHandler = null;
+      }
+
       if (deviceID != null) {
         logger.info("closing {}/{} reason:{}/{}", deviceID, sensorName, statusCode, reason);
 
@@ -147,4 +179,26 @@ public class AgileWebSocketAdapter extends WebSocketAdapter {
       e.printStackTrace();
     }
   }
+
+  /**
+   * Sends a record to the client as a JSON object
+   */
+  private void sendRecord(RecordObject record) {
+    perRecordComponents.add(record.getDeviceID() + "/" + record.getComponentID());
+    send(record);
+  }
+
+  private void sendBatched(RecordObject record) {
+    if (!perRecordComponents.contains(record.getDeviceID() + "/" + record.getComponentID())) {
+      send(record);
+    }
+  }
+
+  private void send(RecordObject record) {
+    try {
+      session.getRemote().sendString(mapper.writeValueAsString(record));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
 }
@@ -0,0 +1,24 @@
+#!/bin/sh
+#-------------------------------------------------------------------------------
+# Copyright (C) 2017 Create-Net / FBK.
+# All rights reserved. This program and the accompanying materials
+# are made available under the terms of the Eclipse Public License 2.0
+# which accompanies this distribution, and is available at
+# https://www.eclipse.org/legal/epl-2.0/
+# 
+# SPDX-License-Identifier: EPL-2.0
+# 
+# Contributors:
+#     Create-Net / FBK - initial API and implementation
+#-------------------------------------------------------------------------------
+
+deviceType=$1
+shift
+
+#Extract devices from list of discovered devices
+ids=$(printf '%s\n' "$@" | jq -R . | jq -s -c .)
+devices=$(curl -X GET --header 'Accept: application/json' 'http://localhost:8080/api/protocols/devices' | jq -c --argjson ids "$ids" --arg type "$deviceType" '[.[] | select(.id as $id | $ids | index($id)) | {overview: ., type: $type}]')
+echo $devices
+
+#Register and connect the devices, results are streamed as each device is done
+curl -N -X POST --header 'Content-Type: application/json' --header 'Accept: application/json' -d '{"devices": '"$devices"'}' 'http://localhost:8080/api/devices/batch/register'
@@ -0,0 +1,17 @@
+#!/bin/sh
+#-------------------------------------------------------------------------------
+# Copyright (C) 2017 Create-Net / FBK.
+# All rights reserved. This program and the accompanying materials
+# are made available under the terms of the Eclipse Public License 2.0
+# which accompanies this distribution, and is available at
+# https://www.eclipse.org/legal/epl-2.0/
+# 
+# SPDX-License-Identifier: EPL-2.0
+# 
+# Contributors:
+#     Create-Net / FBK - initial API and implementation
+#-------------------------------------------------------------------------------
+
+#Find registered devices, e.g. '{"name": "CC2650*", "status": "CONNECTED", "sort": "name", "limit": 10}'
+query=${1:-"{}"}
+curl -X POST --header 'Content-Type: application/json' --header 'Accept: application/json' -d "$query" 'http://localhost:8080/api/devices/find' | jq '.[] | {id: .deviceId, name: .name, protocol: .protocol, address: .address }'
@@ -0,0 +1,20 @@
+#!/bin/sh
+#-------------------------------------------------------------------------------
+# Copyright (C) 2017 Create-Net / FBK.
+# All rights reserved. This program and the accompanying materials
+# are made available under the terms of the Eclipse Public License 2.0
+# which accompanies this distribution, and is available at
+# https://www.eclipse.org/legal/epl-2.0/
+# 
+# SPDX-License-Identifier: EPL-2.0
+# 
+# Contributors:
+#     Create-Net / FBK - initial API and implementation
+#-------------------------------------------------------------------------------
+
+#Read the history of a component between two timestamps in ms
+deviceID=$1
+componetName=$2
+from=${3:-0}
+to=${4:-9223372036854775807}
+curl -X GET --header 'Accept: application/json' "http://localhost:8080/api/device/$deviceID/$componetName/history?from=$from&to=$to"
@@ -0,0 +1,25 @@
+#!/bin/sh
+#-------------------------------------------------------------------------------
+# Copyright (C) 2017 Create-Net / FBK.
+# All rights reserved. This program and the accompanying materials
+# are made available under the terms of the Eclipse Public License 2.0
+# which accompanies this distribution, and is available at
+# https://www.eclipse.org/legal/epl-2.0/
+# 
+# SPDX-License-Identifier: EPL-2.0
+# 
+# Contributors:
+#     Create-Net / FBK - initial API and implementation
+#-------------------------------------------------------------------------------
+
+deviceID=$1
+componetName=$2
+minInterval=$3
+
+if [ -z "$minInterval" ]; then
+  #Print the sampling state of the component
+  curl -X GET --header 'Accept: application/json' "http://localhost:8080/api/device/$deviceID/$componetName/sampling"
+else
+  #Sample the component every minInterval to maxInterval ms, 0 stops the sampling
+  curl -X PUT --header 'Accept: application/json' "http://localhost:8080/api/device/$deviceID/$componetName/sampling?minInterval=$minInterval&maxInterval=${4:-0}&threshold=${5:-0}"
+fi
@@ -0,0 +1,22 @@
+#!/bin/sh
+#-------------------------------------------------------------------------------
+# Copyright (C) 2017 Create-Net / FBK.
+# All rights reserved. This program and the accompanying materials
+# are made available under the terms of the Eclipse Public License 2.0
+# which accompanies this distribution, and is available at
+# https://www.eclipse.org/legal/epl-2.0/
+# 
+# SPDX-License-Identifier: EPL-2.0
+# 
+# Contributors:
+#     Create-Net / FBK - initial API and implementation
+#-------------------------------------------------------------------------------
+
+#Subscribe to several components at once, to all of them when none is given
+deviceID=$1
+shift
+query=""
+for componetName in "$@"; do
+  query="$query&component=$componetName"
+done
+curl -X POST --header 'Content-Type: application/json' --header 'Accept: application/json' "http://localhost:8080/api/device/$deviceID/subscribe?${query#&}"